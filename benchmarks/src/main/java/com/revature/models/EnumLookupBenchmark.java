@@ -0,0 +1,40 @@
+package com.revature.models;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking a status up by its display name and a type up by its constant name, as request bodies are
+ * parsed. The names are cycled through so the lookup can not be folded into a constant.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class EnumLookupBenchmark {
+    private static final String[] STATUS_NAMES = {"Pending", "Approved", "Denied", "Closed"};
+    private static final String[] TYPE_NAMES = {"LODGING", "TRAVEL", "FOOD", "OTHER"};
+
+    private int next;
+
+    @Benchmark
+    public ReimbursementStatus statusGetByName() {
+        return ReimbursementStatus.getByName(STATUS_NAMES[next++ & 3]);
+    }
+
+    @Benchmark
+    public ReimbursementType typeValueOf() {
+        return ReimbursementType.valueOf(TYPE_NAMES[next++ & 3]);
+    }
+}
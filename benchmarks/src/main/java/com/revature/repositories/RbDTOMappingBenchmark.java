@@ -0,0 +1,56 @@
+package com.revature.repositories;
+
+import com.revature.dtos.RbDTO;
+import com.revature.models.ReimbursementStatus;
+import com.revature.models.ReimbursementType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning the rows of a reimbursement query into RbDTOs, for a page and for a large listing. The rows are
+ * built the way Hibernate returns them for DTO_COLUMNS, half of them resolved.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class RbDTOMappingBenchmark {
+
+    @Param({"25", "1000"})
+    private int rows;
+
+    private List<Object[]> resultList;
+
+    @Setup
+    public void setUp() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        resultList = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            boolean resolved = i % 2 == 0;
+            resultList.add(new Object[] {i, 10.0 + i, now, resolved ? now : null, "lunch with the client " + i,
+                    "Em", "Ployee", resolved ? "Fi" : null, resolved ? "Nance" : null,
+                    resolved ? ReimbursementStatus.APPROVED : ReimbursementStatus.PENDING, ReimbursementType.FOOD, 0});
+        }
+    }
+
+    @Benchmark
+    public List<RbDTO> mapResultListToDTO() {
+        return ReimbursementsRepository.mapResultListToDTO(resultList);
+    }
+}
@@ -0,0 +1,58 @@
+package com.revature.services;
+
+import com.revature.dtos.RbDTO;
+import com.revature.models.Reimbursement;
+import com.revature.models.ReimbursementStatus;
+import com.revature.models.ReimbursementType;
+import com.revature.models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting a loaded reimbursement to an RbDTO, for a pending one and for a resolved one, which also
+ * formats the resolved time and the resolver's name.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ReimbursementToRbDTOBenchmark {
+    private ReimbursementService reimbService;
+    private Reimbursement pending;
+    private Reimbursement resolved;
+
+    @Setup
+    public void setUp() {
+        reimbService = ReimbursementService.getInstance();
+        User author = new User(1, "employee", "secret", "Em", "Ployee", "em@example.com", 3);
+        User resolver = new User(2, "finance", "secret", "Fi", "Nance", "fi@example.com", 2);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        pending = new Reimbursement(1, 42.5, now, null, "lunch with the client", author, null,
+                ReimbursementStatus.PENDING, ReimbursementType.FOOD);
+        resolved = new Reimbursement(2, 42.5, now, now, "lunch with the client", author, resolver,
+                ReimbursementStatus.APPROVED, ReimbursementType.FOOD);
+    }
+
+    @Benchmark
+    public RbDTO pending() {
+        return reimbService.reimbursementToRbDTO(pending);
+    }
+
+    @Benchmark
+    public RbDTO resolved() {
+        return reimbService.reimbursementToRbDTO(resolved);
+    }
+}
@@ -0,0 +1,69 @@
+package com.revature.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.revature.dtos.Credentials;
+import com.revature.dtos.ErrorResponse;
+import com.revature.dtos.RbDTO;
+import com.revature.models.ReimbursementStatus;
+import com.revature.models.ReimbursementType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares what the servlets used to do on every request, build a new ObjectMapper, with the shared JsonCodec. One
+ * request reads a Credentials body and writes a page of 25 reimbursements and an error response. Run with
+ * -jvmArgsAppend -Djson.afterburner=true to include Afterburner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class JsonCodecBenchmark {
+    private byte[] body;
+    private List<RbDTO> page;
+    private ErrorResponse err;
+
+    @Setup
+    public void setUp() {
+        body = "{\"username\":\"employee\",\"password\":\"secret\"}".getBytes(StandardCharsets.UTF_8);
+        page = new ArrayList<>();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < 25; i++) {
+            page.add(new RbDTO(i, 10.0 + i, now, null, "lunch with the client " + i, "Em", "Ployee", null, null,
+                    ReimbursementStatus.PENDING, ReimbursementType.FOOD, 0));
+        }
+        err = new ErrorResponse(404, "No such resource.");
+    }
+
+    @Benchmark
+    public int newObjectMapperPerRequest() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Credentials creds = mapper.readValue(new ByteArrayInputStream(body), Credentials.class);
+        return creds.getUsername().length() + mapper.writeValueAsString(page).length()
+                + mapper.writeValueAsString(err).length();
+    }
+
+    @Benchmark
+    public int sharedJsonCodec() throws IOException {
+        Credentials creds = JsonCodec.read(new ByteArrayInputStream(body), Credentials.class);
+        return creds.getUsername().length() + JsonCodec.writeRbDTOs(page).length() + JsonCodec.write(err).length();
+    }
+}
@@ -0,0 +1,63 @@
+package com.revature.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures hashing a new password and verifying a login against a stored hash at the configured cost, and verifying
+ * an old MD5 hash. verifyOnEveryCore runs a login on every core at once; its logins per second divided by the number
+ * of cores is the figure to pick password.iterations by. The cost is read once per JVM, so compare costs with e.g.
+ * -jvmArgsAppend -Dpassword.iterations=100000.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordHashingBenchmark {
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private PasswordHash passwordHash;
+    private String stored;
+
+    @Setup
+    public void setUp() {
+        passwordHash = PasswordHash.getInstance();
+        stored = passwordHash.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public String hash() {
+        return passwordHash.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return passwordHash.verify(PASSWORD, stored);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(Threads.MAX)
+    public boolean verifyOnEveryCore() {
+        return passwordHash.verify(PASSWORD, stored);
+    }
+
+    @Benchmark
+    public boolean verifyLegacyMd5() {
+        return passwordHash.verify("password", "5f4dcc3b5aa765d61d8327deb882cf99");
+    }
+}
@@ -0,0 +1,55 @@
+package com.revature.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.revature.dtos.RbDTO;
+import com.revature.models.ReimbursementStatus;
+import com.revature.models.ReimbursementType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a list of RbDTOs to JSON with the shared JsonCodec, the way the reimbursement listings are
+ * answered. Run with -jvmArgsAppend -Djson.afterburner=true to measure Afterburner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class RbDTOSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private List<RbDTO> reimbursements;
+
+    @Setup
+    public void setUp() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        reimbursements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            reimbursements.add(new RbDTO(i, 10.0 + i, now, null, "lunch with the client " + i, "Em", "Ployee", null,
+                    null, ReimbursementStatus.PENDING, ReimbursementType.FOOD, 0));
+        }
+    }
+
+    @Benchmark
+    public String writeRbDTOs() throws JsonProcessingException {
+        return JsonCodec.writeRbDTOs(reimbursements);
+    }
+}
@@ -0,0 +1,57 @@
+package com.revature.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * The latencies of one operation, in nanoseconds. Each virtual user keeps its own logs, so recording needs no
+ * locking, and they are merged once the run is over.
+ */
+public class LatencyLog {
+    private long[] nanos = new long[1024];
+    private int count;
+    private int errors;
+    private boolean sorted;
+
+    public void record(long latency) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+        }
+        nanos[count++] = latency;
+        sorted = false;
+    }
+
+    public void error() {
+        errors++;
+    }
+
+    public void merge(LatencyLog other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.nanos[i]);
+        }
+        errors += other.errors;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * @param fraction the fraction of requests that were at least as fast, e.g. 0.99
+     * @return returns the latency in milliseconds
+     */
+    public double percentileMillis(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(nanos, 0, count);
+            sorted = true;
+        }
+        int index = (int) Math.ceil(fraction * count) - 1;
+        return nanos[Math.max(0, Math.min(count - 1, index))] / 1_000_000.0;
+    }
+}
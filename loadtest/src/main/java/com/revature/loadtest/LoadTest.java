@@ -0,0 +1,209 @@
+package com.revature.loadtest;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots the application's war in an embedded Tomcat against an embedded PostgreSQL, seeds synthetic users and
+ * reimbursements, and has a number of virtual users drive a mix of /authenticate, /reimburse and /users requests at
+ * it. Reports the throughput and the p50, p95 and p99 latency of each endpoint. Everything runs in this one JVM and
+ * the database is thrown away afterwards, so runs are repeatable on a laptop. Settings are system properties:
+ *   loadtest.mix (default) - a mix named in TrafficMix or operation:weight pairs
+ *   loadtest.clients (50) - virtual users, each making one request at a time
+ *   loadtest.warmUpSeconds (15), loadtest.seconds (60) - the warm up is run but not measured
+ *   loadtest.employees (1000), loadtest.managers (20), loadtest.reimbursements (100000) - the seed
+ *   loadtest.war (target/ers.war), loadtest.serverThreads (200)
+ *   loadtest.csv - also write the report to this file as CSV
+ * Any application setting can be given as well, e.g. -Dpool.maximumPoolSize=20 or -Dpassword.iterations=100000.
+ */
+public class LoadTest {
+    private static final String CONTEXT_PATH = "/ERS";
+
+    private LoadTest() {
+        super();
+    }
+
+    public static void main(String[] args) throws Exception {
+        TrafficMix mix = TrafficMix.parse(System.getProperty("loadtest.mix", "default"));
+        int clients = Integer.getInteger("loadtest.clients", 50);
+        int warmUpSeconds = Integer.getInteger("loadtest.warmUpSeconds", 15);
+        int seconds = Integer.getInteger("loadtest.seconds", 60);
+        int employees = Integer.getInteger("loadtest.employees", 1_000);
+        int managers = Integer.getInteger("loadtest.managers", 20);
+        int reimbursements = Integer.getInteger("loadtest.reimbursements", 100_000);
+        // read by the application as well, the seeded hashes are made at the cost it expects
+        int iterations = Integer.getInteger("password.iterations", 310_000);
+
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            String url = postgres.getJdbcUrl("postgres", "postgres");
+            System.setProperty("url", url);
+            System.setProperty("username", "postgres");
+            // the embedded database trusts local connections, any password does
+            System.setProperty("password", "postgres");
+            // off by default, on here so /diagnostics/cache and /diagnostics/queries can be read during a run
+            System.setProperty("hibernate.statistics", "true");
+
+            long start = System.nanoTime();
+            Tomcat tomcat = startServer();
+            try {
+                String base = "http://localhost:" + tomcat.getConnector().getLocalPort() + CONTEXT_PATH;
+                System.out.printf("Started the application in %d ms%n",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+                start = System.nanoTime();
+                new Seeder(url, "postgres", "postgres").seed(employees, managers, reimbursements, iterations);
+                System.out.printf("Seeded %d employees, %d managers and %d reimbursements in %d ms%n", employees,
+                        managers, reimbursements, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+                Map<Operation, LatencyLog> results = drive(base, mix, clients, employees, managers, warmUpSeconds,
+                        seconds);
+                report(mix, clients, warmUpSeconds, seconds, results);
+            } finally {
+                tomcat.stop();
+                tomcat.destroy();
+            }
+        }
+    }
+
+    private static Tomcat startServer() throws LifecycleException, IOException {
+        Path baseDir = Files.createTempDirectory("ers-loadtest");
+        // the war is expanded into the host's app base, which Tomcat expects to exist
+        Files.createDirectories(baseDir.resolve("webapps"));
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        Connector connector = new Connector();
+        connector.setPort(0);
+        connector.setProperty("maxThreads", System.getProperty("loadtest.serverThreads", "200"));
+        tomcat.setConnector(connector);
+
+        // no JSP engine here, so the default web.xml (which maps one) is left out
+        tomcat.setAddDefaultWebXmlToWebapp(false);
+        File war = new File(System.getProperty("loadtest.war", "target/ers.war"));
+        if (!war.isFile()) {
+            throw new IllegalStateException(war.getAbsolutePath() + " does not exist, run mvn package first");
+        }
+        Context context = tomcat.addWebapp(CONTEXT_PATH, war.getAbsolutePath());
+        Wrapper defaultServlet = Tomcat.addServlet(context, "default", new DefaultServlet());
+        defaultServlet.setLoadOnStartup(1);
+        context.addServletMappingDecoded("/", "default");
+        Tomcat.addDefaultMimeTypeMappings(context);
+        tomcat.start();
+        // a listener that fails leaves the context stopped but Tomcat running, so check rather than seed nothing
+        if (context.getState() != LifecycleState.STARTED) {
+            tomcat.stop();
+            tomcat.destroy();
+            throw new IllegalStateException("The application failed to start, see the log above");
+        }
+        return tomcat;
+    }
+
+    private static Map<Operation, LatencyLog> drive(String base, TrafficMix mix, int clients, int employees,
+                                                    int managers, int warmUpSeconds, int seconds) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(clients);
+        HttpClient client = HttpClient.newBuilder().executor(threads).build();
+        ExecutorService callers = Executors.newFixedThreadPool(clients);
+        try {
+            List<VirtualUser> users = new ArrayList<>(clients);
+            List<Future<?>> logins = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                VirtualUser user = new VirtualUser(client, base, mix, employees, managers, i);
+                users.add(user);
+                logins.add(callers.submit(() -> {
+                    user.logIn();
+                    return null;
+                }));
+            }
+            for (Future<?> login : logins) {
+                login.get();
+            }
+            System.out.printf("%d virtual users logged in, warming up for %d s then measuring for %d s%n", clients,
+                    warmUpSeconds, seconds);
+
+            long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmUpSeconds);
+            long stopAt = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+            List<Future<?>> runs = new ArrayList<>(clients);
+            for (VirtualUser user : users) {
+                user.schedule(measureFrom, stopAt);
+                runs.add(callers.submit(user));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+
+            Map<Operation, LatencyLog> merged = new EnumMap<>(Operation.class);
+            for (VirtualUser user : users) {
+                for (Map.Entry<Operation, LatencyLog> log : user.getLogs().entrySet()) {
+                    merged.computeIfAbsent(log.getKey(), key -> new LatencyLog()).merge(log.getValue());
+                }
+            }
+            return merged;
+        } finally {
+            callers.shutdownNow();
+            threads.shutdownNow();
+        }
+    }
+
+    private static void report(TrafficMix mix, int clients, int warmUpSeconds, int seconds,
+                               Map<Operation, LatencyLog> results) throws IOException {
+        System.out.printf("%nMix %s, %d clients, %d s measured after %d s warm up%n", mix, clients, seconds,
+                warmUpSeconds);
+        String header = String.format("%-40s %9s %7s %9s %9s %9s %9s", "endpoint", "requests", "errors", "req/s",
+                "p50 ms", "p95 ms", "p99 ms");
+        System.out.println(header);
+        List<String> csv = new ArrayList<>();
+        csv.add("endpoint,requests,errors,requests_per_second,p50_ms,p95_ms,p99_ms");
+        LatencyLog total = new LatencyLog();
+        for (Map.Entry<Operation, LatencyLog> entry : results.entrySet()) {
+            LatencyLog log = entry.getValue();
+            if (log.getCount() + log.getErrors() == 0) {
+                continue;
+            }
+            System.out.println(row(entry.getKey().getEndpoint(), log, seconds));
+            csv.add(csvRow(entry.getKey().getEndpoint(), log, seconds));
+            total.merge(log);
+        }
+        System.out.println(row("total", total, seconds));
+        csv.add(csvRow("total", total, seconds));
+
+        String csvFile = System.getProperty("loadtest.csv");
+        if (csvFile != null) {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(csvFile)))) {
+                csv.forEach(out::println);
+            }
+        }
+    }
+
+    private static String row(String endpoint, LatencyLog log, int seconds) {
+        return String.format("%-40s %9d %7d %9.1f %9.1f %9.1f %9.1f", endpoint, log.getCount(), log.getErrors(),
+                log.getCount() / (double) seconds, log.percentileMillis(0.50), log.percentileMillis(0.95),
+                log.percentileMillis(0.99));
+    }
+
+    private static String csvRow(String endpoint, LatencyLog log, int seconds) {
+        return String.format("\"%s\",%d,%d,%.1f,%.2f,%.2f,%.2f", endpoint, log.getCount(), log.getErrors(),
+                log.getCount() / (double) seconds, log.percentileMillis(0.50), log.percentileMillis(0.95),
+                log.percentileMillis(0.99));
+    }
+}
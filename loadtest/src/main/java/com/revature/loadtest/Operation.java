@@ -0,0 +1,66 @@
+package com.revature.loadtest;
+
+import java.net.http.HttpRequest;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The requests a virtual user can make. Each builds its request for the user making it, from that user's sessions.
+ */
+public enum Operation {
+    LOGIN("POST /authenticate") {
+        @Override
+        HttpRequest request(VirtualUser user) {
+            return user.post("/authenticate", null, "{\"username\":\"" + user.randomEmployee() + "\",\"password\":\""
+                    + Seeder.PASSWORD + "\"}");
+        }
+    },
+    EMPLOYEE_LIST("GET /reimburse") {
+        @Override
+        HttpRequest request(VirtualUser user) {
+            return user.get("/reimburse", user.getEmployeeCookie());
+        }
+    },
+    EMPLOYEE_SUBMIT("POST /reimburse") {
+        @Override
+        HttpRequest request(VirtualUser user) {
+            return user.post("/reimburse", user.getEmployeeCookie(), "{\"amount\":" + (1 + user.nextInt(500))
+                    + ",\"description\":\"load test expense\",\"type\":\"FOOD\",\"status\":\"PENDING\"}");
+        }
+    },
+    FINANCE_PENDING("GET /reimburse?status=PENDING&limit=25") {
+        @Override
+        HttpRequest request(VirtualUser user) {
+            return user.get("/reimburse?status=PENDING&limit=25", user.getManagerCookie());
+        }
+    },
+    FINANCE_BY_TYPE("GET /reimburse?type=TRAVEL") {
+        @Override
+        HttpRequest request(VirtualUser user) {
+            return user.get("/reimburse?type=TRAVEL", user.getManagerCookie());
+        }
+    },
+    ADMIN_ADD_USER("POST /users") {
+        @Override
+        HttpRequest request(VirtualUser user) {
+            String name = "lt" + System.currentTimeMillis() % 100_000_000 + "x" + created.incrementAndGet();
+            return user.post("/users", user.getAdminCookie(), "{\"username\":\"" + name + "\",\"password\":\""
+                    + Seeder.PASSWORD + "\",\"firstname\":\"Load\",\"lastname\":\"Test\",\"email\":\"" + name
+                    + "@example.com\"}");
+        }
+    };
+
+    // numbers the users created during a run, so every username and email is new
+    private static final AtomicInteger created = new AtomicInteger();
+
+    private final String endpoint;
+
+    Operation(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    abstract HttpRequest request(VirtualUser user);
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
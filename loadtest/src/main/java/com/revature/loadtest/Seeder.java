@@ -0,0 +1,100 @@
+package com.revature.loadtest;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Base64;
+
+/**
+ * Fills the database with synthetic users and reimbursements, in a few set based statements so that even a large
+ * seed takes seconds. Every user has the same password. Users are named employee1..employeeN, manager1..managerN
+ * and admin1.
+ */
+public class Seeder {
+    public static final String PASSWORD = "load-test-password";
+
+    private static final String INSERT_USERS = "insert into ers_users (username, password, first_name, last_name, "
+            + "email, user_role_id) select ? || g, ?, 'Load', ? || g, ? || g || '@example.com', ? "
+            + "from generate_series(1, ?) g";
+    // a third each of pending, approved and denied, spread over the employees, the types and the last year
+    private static final String INSERT_REIMBURSEMENTS = "insert into ers_reimbursements (amount, submitted, resolved, "
+            + "description, author_id, resolver_id, reimbursement_status_id, reimbursement_type_id) "
+            + "select round((1 + random() * 999)::numeric, 2), now() - g * interval '5 minutes', "
+            + "case when g % 3 = 0 then null else now() - g * interval '4 minutes' end, 'expense ' || g, "
+            + "e.id, case when g % 3 = 0 then null else m.id end, 1 + g % 3, 1 + g % 4 "
+            + "from generate_series(1, ?) g "
+            + "join (select id, row_number() over (order by id) - 1 as n from ers_users where user_role_id = 3) e "
+            + "on e.n = g % ? "
+            + "cross join (select min(id) as id from ers_users where user_role_id = 2) m";
+
+    private final String url;
+    private final String username;
+    private final String password;
+
+    public Seeder(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Inserts the users and reimbursements and refreshes the planner statistics
+     * @param employees the number of employees
+     * @param managers the number of finance managers
+     * @param reimbursements the number of reimbursements, spread evenly over the employees
+     * @param iterations the PBKDF2 cost of the password hash, the same as the application's password.iterations
+     * @throws SQLException thrown if the schema is not there yet or an insert fails
+     */
+    public void seed(int employees, int managers, int reimbursements, int iterations) throws SQLException {
+        String hash = hash(PASSWORD, iterations);
+        try (Connection conn = DriverManager.getConnection(url, username, password)) {
+            insertUsers(conn, "employee", hash, 3, employees);
+            insertUsers(conn, "manager", hash, 2, managers);
+            insertUsers(conn, "admin", hash, 1, 1);
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_REIMBURSEMENTS)) {
+                insert.setInt(1, reimbursements);
+                insert.setInt(2, employees);
+                insert.executeUpdate();
+            }
+            try (Statement analyze = conn.createStatement()) {
+                analyze.execute("analyze");
+            }
+        }
+    }
+
+    private static void insertUsers(Connection conn, String prefix, String hash, int role, int count)
+            throws SQLException {
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_USERS)) {
+            insert.setString(1, prefix);
+            insert.setString(2, hash);
+            insert.setString(3, prefix);
+            insert.setString(4, prefix);
+            insert.setInt(5, role);
+            insert.setInt(6, count);
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Hashes a password in the format PasswordHash stores, pbkdf2-sha256$iterations$salt$hash. One hash is shared by
+     * every seeded user, so seeding does not pay the hashing cost per user
+     */
+    private static String hash(String password, int iterations) {
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, 256);
+        try {
+            byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+            return "pbkdf2-sha256$" + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.revature.loadtest;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A weighted mix of operations, e.g. "EMPLOYEE_LIST:60,EMPLOYEE_SUBMIT:20,LOGIN:20". Each request a virtual user
+ * makes is drawn from the mix. A few named mixes are built in, anything else is parsed as a list of weights.
+ */
+public class TrafficMix {
+    private static final Map<String, String> NAMED = new HashMap<>();
+
+    static {
+        // an ordinary working day, mostly employees checking on their reimbursements
+        NAMED.put("default", "LOGIN:5,EMPLOYEE_LIST:45,EMPLOYEE_SUBMIT:15,FINANCE_PENDING:25,FINANCE_BY_TYPE:9,"
+                + "ADMIN_ADD_USER:1");
+        NAMED.put("read-heavy", "EMPLOYEE_LIST:60,FINANCE_PENDING:30,FINANCE_BY_TYPE:10");
+        NAMED.put("write-heavy", "EMPLOYEE_SUBMIT:70,EMPLOYEE_LIST:20,ADMIN_ADD_USER:10");
+        // everyone arriving at nine o'clock
+        NAMED.put("login-storm", "LOGIN:90,EMPLOYEE_LIST:10");
+    }
+
+    private final Operation[] operations;
+    private final int[] cumulative;
+    private final String description;
+
+    private TrafficMix(Map<Operation, Integer> weights, String description) {
+        operations = weights.keySet().toArray(new Operation[0]);
+        cumulative = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulative[i] = total;
+        }
+        this.description = description;
+    }
+
+    /**
+     * @param spec the name of a built in mix, or operation:weight pairs separated by commas
+     * @return returns the mix
+     * @throws IllegalArgumentException thrown if an operation is unknown or no weight is above zero
+     */
+    public static TrafficMix parse(String spec) {
+        String weightsSpec = NAMED.getOrDefault(spec, spec);
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String pair : weightsSpec.split(",")) {
+            String[] parts = pair.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight > 0) {
+                weights.merge(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), weight, Integer::sum);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix " + spec + " has no operations");
+        }
+        return new TrafficMix(weights, spec.equals(weightsSpec) ? spec : spec + " (" + weightsSpec + ")");
+    }
+
+    /**
+     * @param random the random numbers of the calling virtual user
+     * @return returns the next operation, drawn by weight
+     */
+    public Operation next(Random random) {
+        int pick = random.nextInt(cumulative[cumulative.length - 1]);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (pick < cumulative[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,143 @@
+package com.revature.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * One simulated client. Logs in once as an employee, a finance manager and the admin, then makes requests drawn
+ * from the traffic mix back to back until the run ends. Latencies are only recorded after the warm up.
+ */
+public class VirtualUser implements Runnable {
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient client;
+    private final String base;
+    private final TrafficMix mix;
+    private final int employees;
+    private final int managers;
+    private long measureFrom;
+    private long stopAt;
+    private final Random random;
+    private final Map<Operation, LatencyLog> logs = new EnumMap<>(Operation.class);
+    private String employeeCookie;
+    private String managerCookie;
+    private String adminCookie;
+
+    public VirtualUser(HttpClient client, String base, TrafficMix mix, int employees, int managers, long seed) {
+        this.client = client;
+        this.base = base;
+        this.mix = mix;
+        this.employees = employees;
+        this.managers = managers;
+        this.random = new Random(seed);
+        for (Operation operation : Operation.values()) {
+            logs.put(operation, new LatencyLog());
+        }
+    }
+
+    /**
+     * Logs in the sessions the operations are made with
+     * @throws IOException thrown if a login fails
+     * @throws InterruptedException thrown if interrupted while logging in
+     */
+    public void logIn() throws IOException, InterruptedException {
+        employeeCookie = logIn(randomEmployee());
+        managerCookie = logIn("manager" + (1 + random.nextInt(managers)));
+        adminCookie = logIn("admin1");
+    }
+
+    /**
+     * Sets when the run is measured, must be called before the user is run
+     * @param measureFrom the System.nanoTime from which latencies are recorded, the end of the warm up
+     * @param stopAt the System.nanoTime at which the user stops
+     */
+    public void schedule(long measureFrom, long stopAt) {
+        this.measureFrom = measureFrom;
+        this.stopAt = stopAt;
+    }
+
+    @Override
+    public void run() {
+        while (System.nanoTime() < stopAt) {
+            Operation operation = mix.next(random);
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                HttpResponse<Void> response = client.send(operation.request(this), HttpResponse.BodyHandlers.discarding());
+                ok = response.statusCode() / 100 == 2;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long end = System.nanoTime();
+            if (start >= measureFrom && end <= stopAt) {
+                if (ok) {
+                    logs.get(operation).record(end - start);
+                } else {
+                    logs.get(operation).error();
+                }
+            }
+        }
+    }
+
+    public Map<Operation, LatencyLog> getLogs() {
+        return logs;
+    }
+
+    String getEmployeeCookie() {
+        return employeeCookie;
+    }
+
+    String getManagerCookie() {
+        return managerCookie;
+    }
+
+    String getAdminCookie() {
+        return adminCookie;
+    }
+
+    String randomEmployee() {
+        return "employee" + (1 + random.nextInt(employees));
+    }
+
+    int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    HttpRequest get(String path, String cookie) {
+        return builder(path, cookie).GET().build();
+    }
+
+    HttpRequest post(String path, String cookie, String json) {
+        return builder(path, cookie).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpRequest.Builder builder(String path, String cookie) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(base + path)).timeout(TIMEOUT);
+        if (cookie != null) {
+            builder.header("Cookie", cookie);
+        }
+        return builder;
+    }
+
+    private String logIn(String username) throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(post("/authenticate", null, "{\"username\":\"" + username
+                + "\",\"password\":\"" + Seeder.PASSWORD + "\"}"), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IOException("Logging in as " + username + " failed with " + response.statusCode());
+        }
+        return response.headers().firstValue("Set-Cookie")
+                .orElseThrow(() -> new IOException("No session cookie for " + username))
+                .split(";")[0];
+    }
+}
@@ -0,0 +1,87 @@
+package com.revature.util;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.catalina.webresources.StandardRoot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+
+import java.io.File;
+import java.net.URISyntaxException;
+
+/**
+ * Runs the application in an embedded Tomcat, built by the java21 profile. With server.virtualThreads (the default)
+ * the connector starts a virtual thread for every request and the AsyncDispatcher runs the database work on virtual
+ * threads too, so a blocked JDBC call parks a virtual thread instead of holding a platform one. Set it to false to
+ * run the same build on server.threads platform threads, for comparison.
+ */
+public class EmbeddedServer {
+    private static final Logger logger = LogManager.getLogger(EmbeddedServer.class);
+
+    private EmbeddedServer() {
+        super();
+    }
+
+    public static void main(String[] args) throws LifecycleException, URISyntaxException {
+        start().getServer().await();
+    }
+
+    /**
+     * Starts Tomcat on server.port with the servlets, filters and listeners found in the compiled classes
+     * @return returns the started server
+     * @throws LifecycleException thrown if Tomcat can not start, e.g. because the port is taken
+     * @throws URISyntaxException thrown if the compiled classes can not be located
+     */
+    public static Tomcat start() throws LifecycleException, URISyntaxException {
+        boolean virtualThreads = AppConfig.getBoolean("server.virtualThreads", true);
+        // the dispatcher reads this when it is first used, which is after the listener has started
+        if (System.getProperty("async.virtualThreads") == null) {
+            System.setProperty("async.virtualThreads", String.valueOf(virtualThreads));
+        }
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(new File(AppConfig.get("server.baseDir", "target/tomcat")).getAbsolutePath());
+
+        Connector connector = new Connector();
+        connector.setPort(AppConfig.getInt("server.port", 8080));
+        connector.setProperty("maxConnections", AppConfig.get("server.maxConnections", "20000"));
+        connector.setProperty("acceptCount", AppConfig.get("server.acceptCount", "1000"));
+        if (virtualThreads) {
+            connector.setProperty("useVirtualThreads", "true");
+        } else {
+            connector.setProperty("maxThreads", AppConfig.get("server.threads", "200"));
+        }
+        tomcat.setConnector(connector);
+
+        // no JSP engine is bundled, so the default web.xml (which maps one) is left out and only static files are served
+        tomcat.setAddDefaultWebXmlToWebapp(false);
+        File webapp = new File(AppConfig.get("server.webapp", "src/main/webapp"));
+        Context context = tomcat.addWebapp(AppConfig.get("server.contextPath", "/ERS"), webapp.getAbsolutePath());
+        Wrapper defaultServlet = Tomcat.addServlet(context, "default", new DefaultServlet());
+        defaultServlet.setLoadOnStartup(1);
+        context.addServletMappingDecoded("/", "default");
+        context.addWelcomeFile("index.html");
+        Tomcat.addDefaultMimeTypeMappings(context);
+        // the classes are already on the launcher's classpath, load them from there rather than a second time
+        ((StandardContext) context).setDelegate(true);
+        // only the application's own classes carry servlet annotations, scanning every jar would just slow startup
+        ((StandardJarScanner) context.getJarScanner()).setScanClassPath(false);
+        File classes = new File(EmbeddedServer.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        WebResourceRoot resources = new StandardRoot(context);
+        resources.addPreResources(new DirResourceSet(resources, "/WEB-INF/classes", classes.getAbsolutePath(), "/"));
+        context.setResources(resources);
+
+        tomcat.start();
+        logger.info("Listening on port {} with {} threads", connector.getPort(),
+                virtualThreads ? "virtual" : AppConfig.get("server.threads", "200") + " platform");
+        return tomcat;
+    }
+}
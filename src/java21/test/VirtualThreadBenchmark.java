@@ -0,0 +1,156 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the embedded server on platform threads with the same server on virtual threads. For each configuration
+ * the server is started in its own JVM, one user logs in and then 1,000 and 10,000 clients each fetch that user's
+ * reimbursements in a loop for a while. Reports requests per second, latency percentiles, and how many requests
+ * were turned away with 503 or failed. Needs the java21 profile build and a Postgres database, e.g.
+ * java -cp "target/classes:target/test-classes:target/lib/*" VirtualThreadBenchmark username password
+ * The url, username and password of the database are passed on to the server if they are set as system properties.
+ * With 10,000 clients the open file limit (ulimit -n) must be well above 10,000.
+ */
+public class VirtualThreadBenchmark {
+    private static final int PORT = 18080;
+    private static final String BASE = "http://localhost:" + PORT + "/ERS";
+    private static final int[] CLIENTS = {1_000, 10_000};
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 30);
+    private static final int WARM_UP_SECONDS = 10;
+    private static final String[] FORWARDED = {"url", "username", "password", "pool.maximumPoolSize"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: VirtualThreadBenchmark <employee username> <password>");
+            System.exit(1);
+        }
+        for (boolean virtualThreads : new boolean[] {false, true}) {
+            Process server = startServer(virtualThreads);
+            try {
+                HttpClient client = HttpClient.newBuilder()
+                        .executor(Executors.newVirtualThreadPerTaskExecutor())
+                        .connectTimeout(Duration.ofSeconds(30))
+                        .build();
+                String cookie = login(client, args[0], args[1]);
+                run(client, cookie, 100, WARM_UP_SECONDS);
+                for (int clients : CLIENTS) {
+                    Result result = run(client, cookie, clients, SECONDS);
+                    System.out.printf("%-8s %6d clients: %9.1f req/s  p50 %5d ms  p99 %5d ms  503s %7d  errors %6d%n",
+                            virtualThreads ? "virtual" : "platform", clients, result.ok.sum() / (double) SECONDS,
+                            result.percentile(0.50), result.percentile(0.99), result.busy.sum(), result.errors.sum());
+                }
+            } finally {
+                server.destroy();
+                server.waitFor(30, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static Process startServer(boolean virtualThreads) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Dserver.port=" + PORT);
+        command.add("-Dserver.virtualThreads=" + virtualThreads);
+        for (String key : FORWARDED) {
+            if (System.getProperty(key) != null) {
+                command.add("-D" + key + "=" + System.getProperty(key));
+            }
+        }
+        command.add("com.revature.util.EmbeddedServer");
+        Process server = new ProcessBuilder(command).inheritIO().start();
+
+        HttpClient probe = HttpClient.newHttpClient();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        while (System.nanoTime() < deadline) {
+            try {
+                probe.send(HttpRequest.newBuilder(URI.create(BASE + "/")).build(), HttpResponse.BodyHandlers.discarding());
+                return server;
+            } catch (IOException e) {
+                Thread.sleep(500);
+            }
+        }
+        server.destroy();
+        throw new IllegalStateException("The server did not start within 120 seconds");
+    }
+
+    private static String login(HttpClient client, String username, String password) throws Exception {
+        String body = "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}";
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(BASE + "/authenticate"))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed with " + response.statusCode());
+        }
+        return response.headers().firstValue("Set-Cookie").orElseThrow().split(";")[0];
+    }
+
+    private static Result run(HttpClient client, String cookie, int clients, int seconds) throws InterruptedException {
+        Result result = new Result();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(BASE + "/reimburse"))
+                .header("Cookie", cookie)
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                callers.execute(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status == 200) {
+                                result.record(System.nanoTime() - start);
+                            } else if (status == 503) {
+                                result.busy.increment();
+                            } else {
+                                result.errors.increment();
+                            }
+                        } catch (IOException e) {
+                            result.errors.increment();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    private static class Result {
+        // request counts by whole milliseconds of latency, the last bucket holds everything slower
+        private final AtomicLongArray millis = new AtomicLongArray(60_001);
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder busy = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        void record(long nanos) {
+            millis.incrementAndGet((int) Math.min(TimeUnit.NANOSECONDS.toMillis(nanos), millis.length() - 1));
+            ok.increment();
+        }
+
+        long percentile(double fraction) {
+            long target = (long) Math.ceil(ok.sum() * fraction);
+            long seen = 0;
+            for (int i = 0; i < millis.length(); i++) {
+                seen += millis.get(i);
+                if (seen >= target && seen > 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.revature.dtos;
+
+import java.util.Objects;
+
+/**
+ * A DTO to facilitate reporting the outcome of one ApproveDeny in a batch
+ */
+public class ApproveDenyResult {
+    private Integer id;
+    private Integer status;
+    private boolean updated;
+    private String message;
+
+    public ApproveDenyResult() {
+        super();
+    }
+
+    /**
+     * @param id the id of the reimbursement
+     * @param status the status it was to be set to
+     * @param updated true if the reimbursement was updated
+     * @param message why the reimbursement was not updated, or null
+     */
+    public ApproveDenyResult(Integer id, Integer status, boolean updated, String message) {
+        this.id = id;
+        this.status = status;
+        this.updated = updated;
+        this.message = message;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public boolean isUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(boolean updated) {
+        this.updated = updated;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ApproveDenyResult)) return false;
+        ApproveDenyResult that = (ApproveDenyResult) o;
+        return isUpdated() == that.isUpdated() &&
+                Objects.equals(getId(), that.getId()) &&
+                Objects.equals(getStatus(), that.getStatus()) &&
+                Objects.equals(getMessage(), that.getMessage());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId(), getStatus(), isUpdated(), getMessage());
+    }
+
+    @Override
+    public String toString() {
+        return "ApproveDenyResult{" +
+                "id=" + id +
+                ", status=" + status +
+                ", updated=" + updated +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,94 @@
+package com.revature.dtos;
+
+import java.util.Objects;
+
+/**
+ * A DTO to facilitate transferring the hit and miss counts of one second level or query cache region
+ */
+public class CacheRegionStats {
+    private String region;
+    private long hits;
+    private long misses;
+    private long puts;
+    private double hitRatio;
+
+    public CacheRegionStats() {
+        super();
+    }
+
+    public CacheRegionStats(String region, long hits, long misses, long puts) {
+        this.region = region;
+        this.hits = hits;
+        this.misses = misses;
+        this.puts = puts;
+        this.hitRatio = (hits + misses == 0) ? 0 : (double) hits / (hits + misses);
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getPuts() {
+        return puts;
+    }
+
+    public void setPuts(long puts) {
+        this.puts = puts;
+    }
+
+    public double getHitRatio() {
+        return hitRatio;
+    }
+
+    public void setHitRatio(double hitRatio) {
+        this.hitRatio = hitRatio;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CacheRegionStats)) return false;
+        CacheRegionStats that = (CacheRegionStats) o;
+        return getHits() == that.getHits() &&
+                getMisses() == that.getMisses() &&
+                getPuts() == that.getPuts() &&
+                Double.compare(that.getHitRatio(), getHitRatio()) == 0 &&
+                Objects.equals(getRegion(), that.getRegion());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getRegion(), getHits(), getMisses(), getPuts(), getHitRatio());
+    }
+
+    @Override
+    public String toString() {
+        return "CacheRegionStats{" +
+                "region='" + region + '\'' +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", puts=" + puts +
+                ", hitRatio=" + hitRatio +
+                '}';
+    }
+}
@@ -0,0 +1,146 @@
+package com.revature.dtos;
+
+import java.util.Objects;
+
+/**
+ * A DTO to facilitate transferring a snapshot of the database connection pool
+ */
+public class ConnectionPoolStats {
+    private int total;
+    private int active;
+    private int idle;
+    private int pending;
+    private int max;
+    private long acquired;
+    private long timeouts;
+    private double avgWaitMillis;
+    private double maxWaitMillis;
+    private double avgUsageMillis;
+
+    public ConnectionPoolStats() {
+        super();
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public void setActive(int active) {
+        this.active = active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public void setIdle(int idle) {
+        this.idle = idle;
+    }
+
+    /**
+     * The number of threads currently waiting for a connection
+     * @return returns the number of waiting threads
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    public void setPending(int pending) {
+        this.pending = pending;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public void setMax(int max) {
+        this.max = max;
+    }
+
+    public long getAcquired() {
+        return acquired;
+    }
+
+    public void setAcquired(long acquired) {
+        this.acquired = acquired;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public void setTimeouts(long timeouts) {
+        this.timeouts = timeouts;
+    }
+
+    public double getAvgWaitMillis() {
+        return avgWaitMillis;
+    }
+
+    public void setAvgWaitMillis(double avgWaitMillis) {
+        this.avgWaitMillis = avgWaitMillis;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(double maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public double getAvgUsageMillis() {
+        return avgUsageMillis;
+    }
+
+    public void setAvgUsageMillis(double avgUsageMillis) {
+        this.avgUsageMillis = avgUsageMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConnectionPoolStats)) return false;
+        ConnectionPoolStats that = (ConnectionPoolStats) o;
+        return getTotal() == that.getTotal() &&
+                getActive() == that.getActive() &&
+                getIdle() == that.getIdle() &&
+                getPending() == that.getPending() &&
+                getMax() == that.getMax() &&
+                getAcquired() == that.getAcquired() &&
+                getTimeouts() == that.getTimeouts() &&
+                Double.compare(that.getAvgWaitMillis(), getAvgWaitMillis()) == 0 &&
+                Double.compare(that.getMaxWaitMillis(), getMaxWaitMillis()) == 0 &&
+                Double.compare(that.getAvgUsageMillis(), getAvgUsageMillis()) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getTotal(), getActive(), getIdle(), getPending(), getMax(), getAcquired(), getTimeouts(),
+                getAvgWaitMillis(), getMaxWaitMillis(), getAvgUsageMillis());
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats{" +
+                "total=" + total +
+                ", active=" + active +
+                ", idle=" + idle +
+                ", pending=" + pending +
+                ", max=" + max +
+                ", acquired=" + acquired +
+                ", timeouts=" + timeouts +
+                ", avgWaitMillis=" + avgWaitMillis +
+                ", maxWaitMillis=" + maxWaitMillis +
+                ", avgUsageMillis=" + avgUsageMillis +
+                '}';
+    }
+}
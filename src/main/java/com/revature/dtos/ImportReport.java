@@ -0,0 +1,124 @@
+package com.revature.dtos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A DTO to facilitate reporting the outcome of a reimbursement import: how many rows were read, imported and
+ * rejected, how long it took, and why rows were rejected. Only the first MAX_ERRORS reasons are kept
+ */
+public class ImportReport {
+    public static final int MAX_ERRORS = 100;
+
+    private int read;
+    private int imported;
+    private int rejected;
+    private long millis;
+    private boolean completed = true;
+    private List<String> errors = new ArrayList<>();
+
+    public ImportReport() {
+        super();
+    }
+
+    /**
+     * Counts a rejected row, keeping the reason if fewer than MAX_ERRORS have been kept
+     * @param row the number of the row, starting at 1
+     * @param reason why the row was rejected
+     */
+    public void reject(int row, String reason) {
+        reject(row, 1, reason);
+    }
+
+    /**
+     * Counts a number of rejected rows that share one reason, keeping the reason if fewer than MAX_ERRORS have been kept
+     * @param row the number of the first of the rows, starting at 1
+     * @param count how many rows were rejected
+     * @param reason why the rows were rejected
+     */
+    public void reject(int row, int count, String reason) {
+        rejected += count;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add("Row " + row + ": " + reason);
+        }
+    }
+
+    public int getRead() {
+        return read;
+    }
+
+    public void setRead(int read) {
+        this.read = read;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public void setImported(int imported) {
+        this.imported = imported;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ImportReport)) return false;
+        ImportReport that = (ImportReport) o;
+        return getRead() == that.getRead() &&
+                getImported() == that.getImported() &&
+                getRejected() == that.getRejected() &&
+                getMillis() == that.getMillis() &&
+                isCompleted() == that.isCompleted() &&
+                Objects.equals(getErrors(), that.getErrors());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getRead(), getImported(), getRejected(), getMillis(), isCompleted(), getErrors());
+    }
+
+    @Override
+    public String toString() {
+        return "ImportReport{" +
+                "read=" + read +
+                ", imported=" + imported +
+                ", rejected=" + rejected +
+                ", millis=" + millis +
+                ", completed=" + completed +
+                ", errors=" + errors +
+                '}';
+    }
+}
@@ -1,8 +1,8 @@
 package com.revature.dtos;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.revature.models.User;
+import com.revature.util.JsonCodec;
 
 
 import java.util.Objects;
@@ -51,8 +51,7 @@ public class Principal {
     }
 
     public String stringify() throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.writeValueAsString(this);
+        return JsonCodec.write(this);
     }
 
     @Override
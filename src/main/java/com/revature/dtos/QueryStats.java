@@ -0,0 +1,94 @@
+package com.revature.dtos;
+
+import java.util.Objects;
+
+/**
+ * A DTO to facilitate transferring how often one query or statement shape ran and how long it took
+ */
+public class QueryStats {
+    private String query;
+    private long executions;
+    private double totalMillis;
+    private double avgMillis;
+    private double maxMillis;
+
+    public QueryStats() {
+        super();
+    }
+
+    public QueryStats(String query, long executions, double totalMillis, double maxMillis) {
+        this.query = query;
+        this.executions = executions;
+        this.totalMillis = totalMillis;
+        this.avgMillis = (executions == 0) ? 0 : totalMillis / executions;
+        this.maxMillis = maxMillis;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public long getExecutions() {
+        return executions;
+    }
+
+    public void setExecutions(long executions) {
+        this.executions = executions;
+    }
+
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    public void setTotalMillis(double totalMillis) {
+        this.totalMillis = totalMillis;
+    }
+
+    public double getAvgMillis() {
+        return avgMillis;
+    }
+
+    public void setAvgMillis(double avgMillis) {
+        this.avgMillis = avgMillis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    public void setMaxMillis(double maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof QueryStats)) return false;
+        QueryStats that = (QueryStats) o;
+        return getExecutions() == that.getExecutions() &&
+                Double.compare(that.getTotalMillis(), getTotalMillis()) == 0 &&
+                Double.compare(that.getAvgMillis(), getAvgMillis()) == 0 &&
+                Double.compare(that.getMaxMillis(), getMaxMillis()) == 0 &&
+                Objects.equals(getQuery(), that.getQuery());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getQuery(), getExecutions(), getTotalMillis(), getAvgMillis(), getMaxMillis());
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStats{" +
+                "query='" + query + '\'' +
+                ", executions=" + executions +
+                ", totalMillis=" + totalMillis +
+                ", avgMillis=" + avgMillis +
+                ", maxMillis=" + maxMillis +
+                '}';
+    }
+}
@@ -1,6 +1,10 @@
 package com.revature.dtos;
 
-import java.sql.Blob;
+import com.revature.models.ReimbursementStatus;
+import com.revature.models.ReimbursementType;
+
+import java.sql.Timestamp;
+import java.util.Date;
 import java.util.Objects;
 /**
  * A DTO to facilitate easy transferring reimbursements
@@ -16,11 +20,52 @@ public class RbDTO {
     private String status;
     private String type;
     private String description;
+    private Integer version;
 
     public RbDTO() {
         super();
     }
 
+    /**
+     * Builds an RbDTO straight from the columns of a projection query, so list views never load whole entities
+     * @param id the id of the reimbursement
+     * @param amount the amount of the reimbursement
+     * @param submitted when the reimbursement was submitted
+     * @param resolved when the reimbursement was resolved, may be null
+     * @param description the description of the reimbursement
+     * @param authorFirstname the first name of the author
+     * @param authorLastname the last name of the author
+     * @param resolverFirstname the first name of the resolver, may be null
+     * @param resolverLastname the last name of the resolver, may be null
+     * @param status the status of the reimbursement
+     * @param type the type of the reimbursement
+     * @param version the version of the reimbursement, sent back with an update to detect concurrent changes
+     */
+    public RbDTO(Integer id, Double amount, Date submitted, Date resolved, String description,
+                 String authorFirstname, String authorLastname, String resolverFirstname, String resolverLastname,
+                 ReimbursementStatus status, ReimbursementType type, Integer version) {
+        this.id = id;
+        this.amount = amount;
+        this.submitted = formatTimestamp(submitted);
+        this.resolved = formatTimestamp(resolved);
+        this.description = description;
+        this.authorName = authorFirstname + " " + authorLastname;
+        this.resolverName = (resolverFirstname == null) ? null : resolverFirstname + " " + resolverLastname;
+        this.status = (status == null) ? null : status.toString();
+        this.type = (type == null) ? null : type.toString();
+        this.version = version;
+    }
+
+    /**
+     * Formats a database timestamp to the second, the way reimbursements have always been shown in list views
+     * @param time the timestamp, Hibernate hands it over as a java.sql.Timestamp
+     * @return returns the formatted time, or null if there is no time
+     */
+    private static String formatTimestamp(Date time) {
+        if (time == null) return null;
+        return new Timestamp(time.getTime()).toString().substring(0,19);
+    }
+
     public Integer getId() {
         return id;
     }
@@ -101,6 +146,14 @@ public class RbDTO {
         this.description = description;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -115,12 +168,13 @@ public class RbDTO {
                 Objects.equals(getResolverName(), rbDTO.getResolverName()) &&
                 Objects.equals(getStatus(), rbDTO.getStatus()) &&
                 Objects.equals(getType(), rbDTO.getType()) &&
-                Objects.equals(getDescription(), rbDTO.getDescription());
+                Objects.equals(getDescription(), rbDTO.getDescription()) &&
+                Objects.equals(getVersion(), rbDTO.getVersion());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getId(), getAmount(), getSubmitted(), getResolved(), getImage(), getAuthorName(), getResolverName(), getStatus(), getType(), getDescription());
+        return Objects.hash(getId(), getAmount(), getSubmitted(), getResolved(), getImage(), getAuthorName(), getResolverName(), getStatus(), getType(), getDescription(), getVersion());
     }
 
     @Override
@@ -136,6 +190,7 @@ public class RbDTO {
                 ", status='" + status + '\'' +
                 ", type='" + type + '\'' +
                 ", description='" + description + '\'' +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,63 @@
+package com.revature.dtos;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A DTO to facilitate transferring one page of reimbursements along with the cursor for the next page
+ */
+public class RbPage {
+    private List<RbDTO> reimbursements;
+    private String nextCursor;
+
+    public RbPage() {
+        super();
+    }
+
+    public RbPage(List<RbDTO> reimbursements, String nextCursor) {
+        this.reimbursements = reimbursements;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<RbDTO> getReimbursements() {
+        return reimbursements;
+    }
+
+    public void setReimbursements(List<RbDTO> reimbursements) {
+        this.reimbursements = reimbursements;
+    }
+
+    /**
+     * The cursor to send back as the after parameter to get the next page. Null if this is the last page.
+     * @return returns the next cursor
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RbPage)) return false;
+        RbPage rbPage = (RbPage) o;
+        return Objects.equals(getReimbursements(), rbPage.getReimbursements()) &&
+                Objects.equals(getNextCursor(), rbPage.getNextCursor());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getReimbursements(), getNextCursor());
+    }
+
+    @Override
+    public String toString() {
+        return "RbPage{" +
+                "reimbursements=" + reimbursements +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
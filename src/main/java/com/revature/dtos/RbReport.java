@@ -0,0 +1,148 @@
+package com.revature.dtos;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A DTO to facilitate transferring a summary of the reimbursements submitted in a date range: the overall count and
+ * total, and the count and total by status, type, author, resolver and month
+ */
+public class RbReport {
+    private String from;
+    private String to;
+    private long count;
+    private double total;
+    private List<ReportGroup> byStatus;
+    private List<ReportGroup> byType;
+    private List<ReportGroup> byAuthor;
+    private List<ReportGroup> byResolver;
+    private List<ReportGroup> byMonth;
+
+    public RbReport() {
+        super();
+    }
+
+    /**
+     * @return returns the first day of the range, or null if it is open
+     */
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    /**
+     * @return returns the last day of the range, or null if it is open
+     */
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public void setTotal(double total) {
+        this.total = total;
+    }
+
+    public List<ReportGroup> getByStatus() {
+        return byStatus;
+    }
+
+    public void setByStatus(List<ReportGroup> byStatus) {
+        this.byStatus = byStatus;
+    }
+
+    public List<ReportGroup> getByType() {
+        return byType;
+    }
+
+    public void setByType(List<ReportGroup> byType) {
+        this.byType = byType;
+    }
+
+    /**
+     * @return returns the authors with the highest totals, highest first
+     */
+    public List<ReportGroup> getByAuthor() {
+        return byAuthor;
+    }
+
+    public void setByAuthor(List<ReportGroup> byAuthor) {
+        this.byAuthor = byAuthor;
+    }
+
+    /**
+     * @return returns the resolvers with the highest totals, highest first. Unresolved reimbursements are left out
+     */
+    public List<ReportGroup> getByResolver() {
+        return byResolver;
+    }
+
+    public void setByResolver(List<ReportGroup> byResolver) {
+        this.byResolver = byResolver;
+    }
+
+    /**
+     * @return returns one group per month with a submitted reimbursement, keyed yyyy-MM, oldest first
+     */
+    public List<ReportGroup> getByMonth() {
+        return byMonth;
+    }
+
+    public void setByMonth(List<ReportGroup> byMonth) {
+        this.byMonth = byMonth;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RbReport)) return false;
+        RbReport rbReport = (RbReport) o;
+        return getCount() == rbReport.getCount() &&
+                Double.compare(rbReport.getTotal(), getTotal()) == 0 &&
+                Objects.equals(getFrom(), rbReport.getFrom()) &&
+                Objects.equals(getTo(), rbReport.getTo()) &&
+                Objects.equals(getByStatus(), rbReport.getByStatus()) &&
+                Objects.equals(getByType(), rbReport.getByType()) &&
+                Objects.equals(getByAuthor(), rbReport.getByAuthor()) &&
+                Objects.equals(getByResolver(), rbReport.getByResolver()) &&
+                Objects.equals(getByMonth(), rbReport.getByMonth());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getFrom(), getTo(), getCount(), getTotal(), getByStatus(), getByType(), getByAuthor(),
+                getByResolver(), getByMonth());
+    }
+
+    @Override
+    public String toString() {
+        return "RbReport{" +
+                "from='" + from + '\'' +
+                ", to='" + to + '\'' +
+                ", count=" + count +
+                ", total=" + total +
+                ", byStatus=" + byStatus +
+                ", byType=" + byType +
+                ", byAuthor=" + byAuthor +
+                ", byResolver=" + byResolver +
+                ", byMonth=" + byMonth +
+                '}';
+    }
+}
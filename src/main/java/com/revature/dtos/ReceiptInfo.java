@@ -0,0 +1,124 @@
+package com.revature.dtos;
+
+import java.util.Objects;
+
+/**
+ * A DTO to facilitate serving a receipt without loading it: who owns it, how big it is and what kind of file it is,
+ * or the content hash if the receipt is kept on disk
+ */
+public class ReceiptInfo {
+    private int reimbursementId;
+    private int authorId;
+    private long length;
+    private String contentType;
+    private String hash;
+
+    public ReceiptInfo() {
+        super();
+    }
+
+    public ReceiptInfo(int reimbursementId, int authorId, long length, String contentType) {
+        this.reimbursementId = reimbursementId;
+        this.authorId = authorId;
+        this.length = length;
+        this.contentType = contentType;
+    }
+
+    public ReceiptInfo(int reimbursementId, int authorId, String hash) {
+        this.reimbursementId = reimbursementId;
+        this.authorId = authorId;
+        this.hash = hash;
+    }
+
+    /**
+     * Guesses the content type of a receipt from the first bytes of the file
+     * @param header the first bytes of the receipt, at least 8 if the receipt is that long
+     * @return returns the content type, application/octet-stream if it is not a known image or pdf
+     */
+    public static String sniffContentType(byte[] header) {
+        if (header == null) return "application/octet-stream";
+        if (startsWith(header, 0x89, 'P', 'N', 'G')) return "image/png";
+        if (startsWith(header, 0xFF, 0xD8, 0xFF)) return "image/jpeg";
+        if (startsWith(header, 'G', 'I', 'F', '8')) return "image/gif";
+        if (startsWith(header, '%', 'P', 'D', 'F')) return "application/pdf";
+        if (startsWith(header, 'R', 'I', 'F', 'F') && header.length >= 12
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') return "image/webp";
+        return "application/octet-stream";
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xff) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    public int getReimbursementId() {
+        return reimbursementId;
+    }
+
+    public void setReimbursementId(int reimbursementId) {
+        this.reimbursementId = reimbursementId;
+    }
+
+    public int getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(int authorId) {
+        this.authorId = authorId;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ReceiptInfo)) return false;
+        ReceiptInfo that = (ReceiptInfo) o;
+        return getReimbursementId() == that.getReimbursementId() &&
+                getAuthorId() == that.getAuthorId() &&
+                getLength() == that.getLength() &&
+                Objects.equals(getContentType(), that.getContentType()) &&
+                Objects.equals(getHash(), that.getHash());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getReimbursementId(), getAuthorId(), getLength(), getContentType(), getHash());
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiptInfo{" +
+                "reimbursementId=" + reimbursementId +
+                ", authorId=" + authorId +
+                ", length=" + length +
+                ", contentType='" + contentType + '\'' +
+                ", hash='" + hash + '\'' +
+                '}';
+    }
+}
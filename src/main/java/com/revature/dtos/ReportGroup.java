@@ -0,0 +1,88 @@
+package com.revature.dtos;
+
+import java.util.Objects;
+
+/**
+ * A DTO to facilitate transferring the number and total amount of the reimbursements in one group of a report, e.g.
+ * one status, type, user or month. The groups of users are keyed by name and also carry the id of the user, since two
+ * users can have the same name
+ */
+public class ReportGroup {
+    private String key;
+    private Integer userId;
+    private long count;
+    private double total;
+
+    public ReportGroup() {
+        super();
+    }
+
+    public ReportGroup(String key, long count, double total) {
+        this.key = key;
+        this.count = count;
+        this.total = total;
+    }
+
+    public ReportGroup(Integer userId, String key, long count, double total) {
+        this(key, count, total);
+        this.userId = userId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public void setTotal(double total) {
+        this.total = total;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ReportGroup)) return false;
+        ReportGroup that = (ReportGroup) o;
+        return getCount() == that.getCount() &&
+                Double.compare(that.getTotal(), getTotal()) == 0 &&
+                Objects.equals(getKey(), that.getKey()) &&
+                Objects.equals(getUserId(), that.getUserId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getKey(), getUserId(), getCount(), getTotal());
+    }
+
+    @Override
+    public String toString() {
+        return "ReportGroup{" +
+                "key='" + key + '\'' +
+                ", userId=" + userId +
+                ", count=" + count +
+                ", total=" + total +
+                '}';
+    }
+}
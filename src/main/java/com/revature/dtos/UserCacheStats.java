@@ -0,0 +1,97 @@
+package com.revature.dtos;
+
+import java.util.Objects;
+
+/**
+ * A DTO to facilitate transferring the size and hit, miss, eviction and invalidation counts of the user cache
+ */
+public class UserCacheStats {
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    private long absentHits;
+
+    public UserCacheStats() {
+        super();
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public void setInvalidations(long invalidations) {
+        this.invalidations = invalidations;
+    }
+
+    public long getAbsentHits() {
+        return absentHits;
+    }
+
+    public void setAbsentHits(long absentHits) {
+        this.absentHits = absentHits;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UserCacheStats)) return false;
+        UserCacheStats that = (UserCacheStats) o;
+        return getSize() == that.getSize() &&
+                getHits() == that.getHits() &&
+                getMisses() == that.getMisses() &&
+                getEvictions() == that.getEvictions() &&
+                getInvalidations() == that.getInvalidations() &&
+                getAbsentHits() == that.getAbsentHits();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getSize(), getHits(), getMisses(), getEvictions(), getInvalidations(), getAbsentHits());
+    }
+
+    @Override
+    public String toString() {
+        return "UserCacheStats{" +
+                "size=" + size +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", invalidations=" + invalidations +
+                ", absentHits=" + absentHits +
+                '}';
+    }
+}
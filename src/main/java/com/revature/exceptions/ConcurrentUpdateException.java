@@ -0,0 +1,11 @@
+package com.revature.exceptions;
+
+/**
+ * If a client attempts to update a user or reimbursement that someone else changed since the client read it, throw
+ * this exception.
+ */
+public class ConcurrentUpdateException extends RuntimeException {
+    public ConcurrentUpdateException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.revature.exceptions;
+
+/**
+ * If a client sends a malformed cursor, limit or sort order while paging through reimbursements throw this exception.
+ */
+public class InvalidPageRequestException extends RuntimeException {
+    public InvalidPageRequestException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.revature.exceptions;
+
+/**
+ * If a client asks for a report with a malformed date range or user limit, throw this exception.
+ */
+public class InvalidReportRequestException extends RuntimeException {
+    public InvalidReportRequestException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.revature.exceptions;
+
+/**
+ * If one request runs the same statement more times than sql.nPlusOneThreshold allows, and sql.nPlusOneFail is set,
+ * throw this exception. Usually a lazy or eager association being loaded one row at a time.
+ */
+public class RepeatedStatementException extends RuntimeException {
+    public RepeatedStatementException(final String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,7 @@
 package com.revature.models;
 
 import org.hibernate.annotations.*;
+import org.hibernate.annotations.Cache;
 
 import javax.persistence.*;
 import javax.persistence.Entity;
@@ -13,15 +14,22 @@ import java.util.Objects;
  * The base unit of the ERS system. ready to include images
  */
 @Entity
+@NamedEntityGraph(name = Reimbursement.WITH_USERS, attributeNodes = {
+        @NamedAttributeNode("author"), @NamedAttributeNode("resolver")})
 @DynamicInsert
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "reimbursements")
 @Table(name = "ERS_REIMBURSEMENTS")
 public class Reimbursement {
+    // fetches the author and resolver in the same statement as the reimbursement, for loads that need their names
+    public static final String WITH_USERS = "Reimbursement.withUsers";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
     private Integer id;
 
-    @Column(name = "AMOUNT", nullable = false)
+    @Column(name = "AMOUNT", nullable = false, columnDefinition = "numeric")
     private Double amount;
 
     @Column(name = "SUBMITTED", nullable = false)
@@ -35,16 +43,26 @@ public class Reimbursement {
     @Column(name = "DESCRIPTION")
     private String description;
 
+    // lazy (through build time bytecode enhancement) so loading a reimbursement never drags the receipt along,
+    // receipts are served separately by ReimbursementsRepository.streamReceipt
+    @Basic(fetch = FetchType.LAZY)
+    @LazyGroup("receipt")
     @Type(type="org.hibernate.type.BinaryType")
     @Column(name = "receipt", columnDefinition = "bytea")
     private byte[] receipt;
 
-    @ManyToOne(targetEntity = User.class,optional = false)
+    // set instead of receipt when receipts are kept on disk by the FileReceiptStore
+    @Column(name = "receipt_hash", length = 64)
+    private String receiptHash;
+
+    // lazy so loading reimbursements does not load their users one at a time, use the WITH_USERS graph when the
+    // users are needed. Left lazy, they are initialized in batches (see User)
+    @ManyToOne(targetEntity = User.class, optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "author_id")
     private User author;
 
-    @ManyToOne(targetEntity = User.class)
-    @JoinColumn(name = "resolver_id", insertable = false, updatable = false)
+    @ManyToOne(targetEntity = User.class, fetch = FetchType.LAZY)
+    @JoinColumn(name = "resolver_id")
     private User resolver;
 
    //@ManyToOne(optional = false)
@@ -57,6 +75,11 @@ public class Reimbursement {
     @Column(name = "reimbursement_type_id")
     private ReimbursementType reimbursementType;
 
+    // bumped on every update, an update made from an older version is rejected instead of overwriting the newer one
+    @Version
+    @Column(name = "version", nullable = false)
+    private int version;
+
     public Reimbursement() {
         super();
     }
@@ -102,6 +125,14 @@ public class Reimbursement {
         this.receipt = receipt;
     }
 
+    public String getReceiptHash() {
+        return receiptHash;
+    }
+
+    public void setReceiptHash(String receiptHash) {
+        this.receiptHash = receiptHash;
+    }
+
     public Integer getId() {
         return id;
     }
@@ -174,6 +205,14 @@ public class Reimbursement {
         this.reimbursementType = reimbursementType;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -207,6 +246,7 @@ public class Reimbursement {
                 ", resolver=" + resolver +
                 ", reimbursementStatus=" + reimbursementStatus +
                 ", reimbursementType=" + reimbursementType +
+                ", version=" + version +
                 '}';
     }
 }
@@ -1,5 +1,10 @@
 package com.revature.models;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import java.util.Objects;
@@ -8,6 +13,11 @@ import java.util.Objects;
  * Base constructs for users, store only the integer representation of roles in the db for easier role checking
  */
 @Entity
+// lazy authors and resolvers are initialized up to 50 at a time rather than with one select each
+@BatchSize(size = 50)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NaturalIdCache(region = "users-by-username")
 @Table(name = "ERS_USERS")
 public class User {
 
@@ -15,6 +25,7 @@ public class User {
     @Column(name = "id")
     private int userId;
 
+    @NaturalId(mutable = true)
     @Column(name = "USERNAME", unique = true, nullable = false)
     private String username;
 
@@ -34,6 +45,12 @@ public class User {
     //@JoinColumn(name = "ROLE_ID")
     @Column(name = "user_ROLE_ID")
     private Integer userRole;
+
+    // bumped on every update, an update made from an older version is rejected instead of overwriting the newer one
+    @Version
+    @Column(name = "version", nullable = false)
+    private int version;
+
     public User() {
         super();
     }
@@ -112,6 +129,14 @@ public class User {
         this.userRole = userRole;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -141,6 +166,7 @@ public class User {
                 ", lastname='" + lastname + '\'' +
                 ", email='" + email + '\'' +
                 ", userRole=" + userRole +
+                ", version=" + version +
                 '}';
     }
 }
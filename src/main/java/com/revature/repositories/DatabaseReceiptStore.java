@@ -0,0 +1,23 @@
+package com.revature.repositories;
+
+import com.revature.models.Reimbursement;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Keeps receipts in the receipt column of the reimbursement row. They are served by ReimbursementsRepository.streamReceipt
+ */
+public class DatabaseReceiptStore implements ReceiptStore {
+
+    @Override
+    public void store(Reimbursement reimbursement, byte[] receipt) {
+        reimbursement.setReceipt(receipt);
+        reimbursement.setReceiptHash(null);
+    }
+
+    @Override
+    public Optional<Path> locate(String hash) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,93 @@
+package com.revature.repositories;
+
+import com.revature.models.Reimbursement;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps receipts as files in a local directory, named by the SHA-256 hash of their content, so the same receipt
+ * uploaded twice is only stored once and a stored receipt never changes. Files are spread over 256 sub directories by
+ * the first two characters of the hash. Only the hash is saved with the reimbursement.
+ */
+public class FileReceiptStore implements ReceiptStore {
+    private static final Pattern SHA_256_HEX = Pattern.compile("[0-9a-f]{64}");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path root;
+
+    public FileReceiptStore(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Writes the receipt to a temporary file and moves it into place, so a half written receipt is never served.
+     * Nothing is written if a receipt with the same content is already stored.
+     * @param reimbursement the reimbursement the receipt belongs to
+     * @param receipt the bytes of the receipt
+     * @throws IOException thrown if the receipt could not be written
+     */
+    @Override
+    public void store(Reimbursement reimbursement, byte[] receipt) throws IOException {
+        String hash = sha256Hex(receipt);
+        Path target = pathFor(hash);
+        if (!Files.exists(target)) {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(receipt);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                }
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // the same receipt was stored by another request in the meantime
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        reimbursement.setReceipt(null);
+        reimbursement.setReceiptHash(hash);
+    }
+
+    @Override
+    public Optional<Path> locate(String hash) {
+        if (hash == null || !SHA_256_HEX.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        Path path = pathFor(hash);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    private Path pathFor(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String sha256Hex(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.revature.repositories;
+
+import com.revature.models.Reimbursement;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where the bytes of receipts are kept. The store is picked with the receipts.store setting: "database" keeps them in
+ * the receipt column of the reimbursement, "file" keeps them on disk and only their hash in the reimbursement.
+ */
+public interface ReceiptStore {
+
+    /**
+     * Stores a receipt for a reimbursement that is about to be saved, and points the reimbursement at it
+     * @param reimbursement the reimbursement the receipt belongs to
+     * @param receipt the bytes of the receipt
+     * @throws IOException thrown if the receipt could not be written
+     */
+    void store(Reimbursement reimbursement, byte[] receipt) throws IOException;
+
+    /**
+     * Finds the file holding a receipt by its content hash
+     * @param hash the SHA-256 hash of the receipt, as lower case hex
+     * @return returns the path of the receipt, or empty if the store has no such receipt
+     */
+    Optional<Path> locate(String hash);
+}
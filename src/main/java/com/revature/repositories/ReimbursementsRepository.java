@@ -1,25 +1,84 @@
 package com.revature.repositories;
 
+import com.revature.dtos.ApproveDeny;
+import com.revature.dtos.ApproveDenyResult;
 import com.revature.dtos.RbDTO;
+import com.revature.dtos.RbPage;
+import com.revature.dtos.RbReport;
+import com.revature.dtos.ReceiptInfo;
+import com.revature.dtos.ReportGroup;
+import com.revature.exceptions.ConcurrentUpdateException;
 import com.revature.models.Reimbursement;
 import com.revature.models.ReimbursementStatus;
 import com.revature.models.ReimbursementType;
 import com.revature.models.User;
-import com.revature.services.UserService;
 import com.revature.util.HibernateUtil;
+import com.revature.util.PageCursor;
+import com.revature.util.StatementTracker;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.Hibernate;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.query.Query;
 
+import javax.persistence.PersistenceException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * A class to interact with the database to CRUD reimbursement objects
  */
 public class ReimbursementsRepository {
     private static final Logger logger = LogManager.getLogger(ReimbursementsRepository.class);
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // list views only select the columns an RbDTO needs, with the author and resolver names joined in the same SQL,
+    // so the receipt bytes and the user rows (with their password hashes) are never loaded
+    private static final String DTO_COLUMNS = "r.id, r.amount, r.submitted, r.resolved, r.description, "
+            + "a.firstname, a.lastname, res.firstname, res.lastname, r.reimbursementStatus, r.reimbursementType, r.version";
+    private static final String DTO_FROM = " from Reimbursement r join r.author a left join r.resolver res";
+    private static final String DTO_SELECT = "select new com.revature.dtos.RbDTO(" + DTO_COLUMNS + ")" + DTO_FROM;
+
+    // the hot finder queries, kept as constants so warmUp() compiles exactly the same HQL into the query plan cache.
+    // Single reimbursements are loaded by id through the second level cache instead
+    private static final String ALL_HQL = DTO_SELECT;
+    private static final String BY_STATUS_HQL = DTO_SELECT + " where r.reimbursementStatus = :status";
+    private static final String BY_AUTHOR_HQL = DTO_SELECT + " where a.userId = :authorId";
+    private static final String BY_TYPE_HQL = DTO_SELECT + " where r.reimbursementType = :type";
+
+    // a fetch graph loads the attributes it names eagerly and leaves the rest as they are mapped
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
+    // the per status and per type lists are read far more often than reimbursements change, so their results are kept
+    // in the query cache until the next write to the table
+    private static final String QUERY_CACHE_REGION = "reimbursement-queries";
+
+    // approve and deny are one round trip: the pending check and the change happen in the same statement. It is
+    // native SQL so that only the reimbursement it changes is evicted from the cache, see resolve
+    private static final String RESOLVE_SQL = "update ers_reimbursements set reimbursement_status_id = :status, "
+            + "resolver_id = :resolver, resolved = current_timestamp, version = version + 1 "
+            + "where id = :id and reimbursement_status_id = :pending";
+    // a query space no entity is mapped to, so Hibernate does not treat the update as touching every reimbursement
+    private static final String RESOLVE_QUERY_SPACE = "reimbursement-resolve";
+    // a batch stamps its reimbursements with the same clock, read once in its transaction
+    private static final String NOW_SQL = "select cast(current_timestamp as timestamp)";
+
+    // receipts are read in slices straight from the bytea column instead of through the entity
+    private static final int RECEIPT_CHUNK_SIZE = 64 * 1024;
+    private static final String RECEIPT_INFO_SQL = "select author_id, octet_length(receipt), "
+            + "substring(receipt from 1 for 12), receipt_hash from ers_reimbursements where id = :id";
+    private static final String RECEIPT_CHUNK_SQL = "select substring(receipt from :start for :len) "
+            + "from ers_reimbursements where id = :id";
 
     public ReimbursementsRepository(){
         super();
@@ -27,27 +86,56 @@ public class ReimbursementsRepository {
 
     //---------------------------------- CREATE -------------------------------------------- //
     /**
-     * Adds a reimbursement to the database, Does not handle Images!
+     * Adds a reimbursement to the database. Its receipt must already have been handed to the ReceiptStore. With
+     * ids.sequence the insert only runs at commit, so a constraint violation is caught there too
      * @param reimbursement the reimbursement to be added to the DB
+     * @return returns true if it was stored, false if the database rejected it
      */
-    // TODO add support to persist receipt images to data source
     public boolean addReimbursement(Reimbursement reimbursement) {
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
-
         try {
             session.save(reimbursement);
+            session.getTransaction().commit();
+            return true;
         } catch (Exception e){
-            session.getTransaction().rollback();
-            session.close();
-            logger.error(e.getStackTrace());
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            logger.error("Could not add a reimbursement for author {}: {}",
+                    reimbursement.getAuthor() == null ? null : reimbursement.getAuthor().getUserId(), e.getMessage());
             return false;
+        } finally {
+            session.close();
         }
+    }
 
-        session.getTransaction().commit();
-        session.close();
-
-        return true;
+    /**
+     * Inserts many reimbursements in one transaction through a stateless session. Nothing is kept in a persistence
+     * context or put in the second level cache, so memory use depends only on the size of the list, and the inserts
+     * are sent in JDBC batches where the id generator allows it. Their receipts must already have been handed to the
+     * ReceiptStore
+     * @param reimbursements the reimbursements to be added to the DB
+     * @return returns true if all of them were stored, false if none were
+     */
+    public boolean addReimbursements(List<Reimbursement> reimbursements) {
+        StatelessSession session = HibernateUtil.getSessionFactory().openStatelessSession();
+        session.beginTransaction();
+        try {
+            for (Reimbursement reimbursement : reimbursements) {
+                session.insert(reimbursement);
+            }
+            session.getTransaction().commit();
+            return true;
+        } catch (Exception e) {
+            logger.error("Could not add {} reimbursements: {}", reimbursements.size(), e.getMessage());
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            return false;
+        } finally {
+            session.close();
+        }
     }
 
     //---------------------------------- READ -------------------------------------------- //
@@ -56,19 +144,8 @@ public class ReimbursementsRepository {
      * Returns a list of RbDTOs that represent all reimbursements stored in the database
      * @return a list of RbDTOs that represent all of the the reimbursements stored in the database
      */
-    @SuppressWarnings("unchecked")
     public List<RbDTO> getAllReimbursements() {
-
-        Session session = HibernateUtil.getSessionFactory().openSession();
-        session.beginTransaction();
-
-        List<Reimbursement> list = session.createQuery("FROM Reimbursement").list();
-        List<RbDTO> reimbursements = mapResultListToDTO(list);
-
-        session.getTransaction().commit();
-        session.close();
-
-        return reimbursements;
+        return listDTOs(ALL_HQL);
     }
 
     /**
@@ -76,39 +153,132 @@ public class ReimbursementsRepository {
      * @param statusId the status to sort reimbursements by when grabbed
      * @return returns a list of RbDTOs of all reimbursements that have the inputted status Id
      */
-    @SuppressWarnings("unchecked")
     public List<RbDTO> getAllReimbSetByStatus(Integer statusId){
-        //List<RbDTO> reimbursements = new ArrayList<>();
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        return listCachedDTOs(BY_STATUS_HQL, "status", ReimbursementStatus.getByNumber(statusId));
+    }
+
+    /**
+     * Gets a single page of reimbursements ordered by submitted time then id, using keyset pagination so that the cost
+     * of a page does not grow with how deep into the table it is.
+     * @param statusId the status to filter by, or null for every status
+     * @param typeId the type to filter by, or null for every type
+     * @param after the cursor of the last row of the previous page, or null for the first page
+     * @param limit the maximum number of reimbursements on the page
+     * @param descending true to page from newest to oldest, false to page from oldest to newest
+     * @return returns the page of RbDTOs, with a next cursor if there are more rows
+     */
+    @SuppressWarnings("unchecked")
+    public RbPage getReimbPage(Integer statusId, Integer typeId, PageCursor after, int limit, boolean descending) {
+        // a plain tuple rather than select new, since the cursor needs the full precision submitted timestamp
+        StringBuilder hql = new StringBuilder("select " + DTO_COLUMNS + DTO_FROM + " where 1 = 1");
+        if (statusId != null) {
+            hql.append(" AND r.reimbursementStatus = :status");
+        }
+        if (typeId != null) {
+            hql.append(" AND r.reimbursementType = :type");
+        }
+        if (after != null) {
+            String cmp = descending ? "<" : ">";
+            // the redundant bound on submitted lets the (submitted, id) index drive a range scan
+            hql.append(" AND r.submitted ").append(cmp).append("= :afterSubmitted")
+                    .append(" AND (r.submitted ").append(cmp).append(" :afterSubmitted")
+                    .append(" OR r.id ").append(cmp).append(" :afterId)");
+        }
+        String dir = descending ? " desc" : " asc";
+        hql.append(" order by r.submitted").append(dir).append(", r.id").append(dir);
+
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
-        String hql = "FROM Reimbursement where reimbursement_status_id = :id";
-        Query<Reimbursement> query = session.createQuery(hql);
-        query.setParameter("id",statusId);
-        List<Reimbursement> list = query.list();
-        List<RbDTO> reimbursements = mapResultListToDTO(list);
+        Query<Object[]> query = session.createQuery(hql.toString());
+        if (statusId != null) {
+            query.setParameter("status", ReimbursementStatus.getByNumber(statusId));
+        }
+        if (typeId != null) {
+            query.setParameter("type", ReimbursementType.getByNumber(typeId));
+        }
+        if (after != null) {
+            query.setParameter("afterSubmitted", after.getSubmitted());
+            query.setParameter("afterId", after.getId());
+        }
+        // one extra row tells us whether there is a next page without a count query
+        query.setMaxResults(limit + 1);
+        List<Object[]> rows = query.list();
         session.getTransaction().commit();
         session.close();
 
-        return reimbursements;
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            Object[] last = rows.get(limit - 1);
+            nextCursor = new PageCursor((Timestamp) last[2], (Integer) last[0]).encode();
+        }
+        return new RbPage(mapResultListToDTO(rows), nextCursor);
     }
 
     /**
-     * A method to get Reimbursements by the id of the reimbursement itself
+     * Walks every reimbursement (optionally filtered by status and type) with a forward only database cursor and hands
+     * each one to the consumer as an RbDTO. Only STREAM_FETCH_SIZE rows are held in memory at a time, no matter how
+     * many the query matches.
+     * @param statusId the status to filter by, or null for every status
+     * @param typeId the type to filter by, or null for every type
+     * @param consumer called once for every reimbursement, in (submitted, id) order
+     */
+    public void streamReimbursements(Integer statusId, Integer typeId, Consumer<RbDTO> consumer) {
+        String hql = DTO_SELECT + " where 1 = 1"
+                + (statusId == null ? "" : " and r.reimbursementStatus = :status")
+                + (typeId == null ? "" : " and r.reimbursementType = :type")
+                + " order by r.submitted, r.id";
+        Session session = HibernateUtil.openSession();
+        session.beginTransaction();
+        try {
+            Query<RbDTO> query = session.createQuery(hql, RbDTO.class);
+            if (statusId != null) {
+                query.setParameter("status", ReimbursementStatus.getByNumber(statusId));
+            }
+            if (typeId != null) {
+                query.setParameter("type", ReimbursementType.getByNumber(typeId));
+            }
+            // postgres only uses a server side cursor inside a transaction with a fetch size set
+            query.setFetchSize(STREAM_FETCH_SIZE);
+            try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    consumer.accept((RbDTO) results.get(0));
+                }
+            }
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * A method to get Reimbursements by the id of the reimbursement itself, with its author and resolver loaded in
+     * the same statement. Served from the second level cache when the reimbursement is in it, in which case the users
+     * come from the users cache region
      * @param reimbId The ID of the reimbursement in the database that is requested
      * @return returns an Option Reimbursement object
      * @throws SQLException Throws an SQLException if there was a problem executing the given statement
      */
-    @SuppressWarnings("unchecked")
     public Optional<Reimbursement> getAReimbByReimbId(Integer reimbId) throws SQLException {
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
-        String hql = "FROM Reimbursement where id = :reimbId";
-        Query<Reimbursement> query = session.createQuery(hql);
-        query.setParameter("reimbId",reimbId);
-        List<Reimbursement> list = query.list();
-        session.getTransaction().commit();
-        session.close();
-        return Optional.of(list.get(0));
+        try {
+            Map<String, Object> hints = Collections.singletonMap(FETCH_GRAPH,
+                    session.getEntityGraph(Reimbursement.WITH_USERS));
+            Reimbursement reimbursement = session.find(Reimbursement.class, reimbId, hints);
+            // a cache hit skips the graph, the caller reads the users after the session is closed
+            if (reimbursement != null) {
+                Hibernate.initialize(reimbursement.getAuthor());
+                Hibernate.initialize(reimbursement.getResolver());
+            }
+            session.getTransaction().commit();
+            return Optional.ofNullable(reimbursement);
+        } finally {
+            session.close();
+        }
     }
 
     /**
@@ -118,76 +288,40 @@ public class ReimbursementsRepository {
      * @return returns an Optional reimbursement
      * @throws SQLException Throws an SQLException if there was a problem executing the given statement
      */
-    @SuppressWarnings("unchecked")
     public Optional<Reimbursement> getAReimbByReimbIdAndUserId(int userId, int reimbId) throws SQLException {
-        Session session = HibernateUtil.getSessionFactory().openSession();
-        session.beginTransaction();
-        String hql = "FROM Reimbursement where id = :id AND author_id = :author";
-        Query<Reimbursement> query = session.createQuery(hql);
-
-        query.setParameter("id", reimbId);
-        query.setParameter("author", userId);
-
-        List<Reimbursement> list = query.list();
-        session.getTransaction().commit();
-        session.close();
-        if(list.size() == 0) {
-            return Optional.empty();
-        }
-        return Optional.of(list.get(0));
+        return getAReimbByReimbId(reimbId)
+                .filter(reimbursement -> reimbursement.getAuthor().getUserId() == userId);
     }
 
     /**
      * A method to get all of the records for an author given their id
      * @param authorId the ID of the author of the reimbursement
-     * @return a set of reimbursements mapped by the MapResultSet method
+     * @return a list of RbDTOs projected straight from the query
      */
-    @SuppressWarnings("unchecked")
     public List<RbDTO> getAllReimbSetByAuthorId(Integer authorId){
-        Session session = HibernateUtil.getSessionFactory().openSession();
-        session.beginTransaction();
-        String hql = "FROM Reimbursement where author_id = :authorId";
-        Query<Reimbursement> query = session.createQuery(hql);
-        query.setParameter("authorId",authorId);
-        List<Reimbursement> list = query.list();
-        List<RbDTO> r_list = mapResultListToDTO(list);
-        session.getTransaction().commit();
-        session.close();
-        return r_list;
+        return listDTOs(BY_AUTHOR_HQL, "authorId", authorId);
     }
 
     /**
      * A method to get all of the records for an author given their id and filter by status
      * @param authorId the ID of the author of the reimbursement
      * @param reStat the status that the reimbursement is to be set to
-     * @return a set of reimbursements mapped by the MapResultSet method
+     * @return a list of RbDTOs projected straight from the query
      */
-    @SuppressWarnings("unchecked")
     public List<RbDTO> getAllReimbSetByAuthorIdAndStatus(Integer authorId, ReimbursementStatus reStat){
-        Session session = HibernateUtil.getSessionFactory().openSession();
-        session.beginTransaction();
-        String hql = "FROM Reimbursement where author_id = :authorId AND reimbursement_status_id = :restat";
-        Query<Reimbursement> query = session.createQuery(hql);
-        query.setParameter("authorId",authorId);
-        query.setParameter("restat",reStat.ordinal());
-        return mapResultListToDTO(query.list());
+        return listDTOs(DTO_SELECT + " where a.userId = :authorId AND r.reimbursementStatus = :restat",
+                "authorId", authorId, "restat", reStat);
     }
 
     /**
      * A method to get all of the records for an author given their id and filter by type
      * @param authorId ID of the Author User
      * @param reType the Type to update the record to
-     * @return a set of reimbursements mapped by the MapResultSet method
+     * @return a list of RbDTOs projected straight from the query
      */
-    @SuppressWarnings("unchecked")
     public List<RbDTO> getAllReimbSetByAuthorIdAndType(Integer authorId, ReimbursementType reType){
-        Session session = HibernateUtil.getSessionFactory().openSession();
-        session.beginTransaction();
-        String hql = "FROM Reimbursement where author_id = :authorId AND reimbursement_type_id = :retype";
-        Query<Reimbursement> query = session.createQuery(hql);
-        query.setParameter("authorId",authorId);
-        query.setParameter("retype",reType.ordinal());
-        return mapResultListToDTO(query.list());
+        return listDTOs(DTO_SELECT + " where a.userId = :authorId AND r.reimbursementType = :retype",
+                "authorId", authorId, "retype", reType);
     }
 
     /**
@@ -196,61 +330,202 @@ public class ReimbursementsRepository {
      * @return returns a list of RbDTO that are all reimbursements with the specified type
      */
     public List<RbDTO> getAllReimbSetByType(Integer typeId)  {
-        Session session = HibernateUtil.getSessionFactory().openSession();
-        session.beginTransaction();
-        String hql = "FROM Reimbursement where reimbursement_type_id = :type";
-        Query<Reimbursement> query = session.createQuery(hql);
-        query.setParameter("type",typeId);
-        return mapResultListToDTO(query.list());
+        return listCachedDTOs(BY_TYPE_HQL, "type", ReimbursementType.getByNumber(typeId));
     }
 
     /**
      * A method to get all of the records for a resolver given their id
      * @param resolverId ID of the Resolver User
-     * @return a set of reimbursements mapped by the MapResultSet method
+     * @return a list of RbDTOs projected straight from the query
      */
-    @SuppressWarnings("unchecked")
     public List<RbDTO> getAllReimbSetByResolverId(Integer resolverId){
-        Session session = HibernateUtil.getSessionFactory().openSession();
-        session.beginTransaction();
-        String hql = "FROM Reimbursement where resolver_id = :id";
-        Query<Reimbursement> query = session.createQuery(hql);
-        query.setParameter("resolver_id",resolverId);
-        return mapResultListToDTO(query.list());
+        return listDTOs(DTO_SELECT + " where res.userId = :id", "id", resolverId);
     }
 
     /**
      * A method to get all of the records for a resolver given their id and filter by status
      * @param resolverId  ID of the Resolver User
      * @param reStat the status to update the record to
-     * @return a set of reimbursements mapped by the MapResultSet method
+     * @return a list of RbDTOs projected straight from the query
      */
-    @SuppressWarnings("unchecked")
     public List<RbDTO> getAllReimbSetByResolverIdAndStatus(Integer resolverId, ReimbursementStatus reStat){
-        Session session = HibernateUtil.getSessionFactory().openSession();
-        session.beginTransaction();
-        String hql = "FROM Reimbursement where resolver_id = :id AND reimbursement_status_id = :restat";
-        Query<Reimbursement> query = session.createQuery(hql);
-        query.setParameter("resolver_id",resolverId);
-        query.setParameter("restat",reStat);
-        return mapResultListToDTO(query.list());
+        return listDTOs(DTO_SELECT + " where res.userId = :id AND r.reimbursementStatus = :restat",
+                "id", resolverId, "restat", reStat);
     }
 
     /**
      * A  method to get all of the records for a resolver given their id and filter by type
      * @param resolverId ID of the Resolver User
      * @param reType type of Reimbursements to select by
-     * @return a set of reimbursements mapped by the MapResultSet method
+     * @return a list of RbDTOs projected straight from the query
      */
-    @SuppressWarnings("unchecked")
     public List<RbDTO> getAllReimbSetByResolverIdAndType(Integer resolverId, ReimbursementType reType){
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        return listDTOs(DTO_SELECT + " where res.userId = :id AND r.reimbursementType = :retype",
+                "id", resolverId, "retype", reType);
+    }
+
+    /**
+     * Summarises the reimbursements submitted in a date range with GROUP BY queries, so only the totals leave the
+     * database. The queries run in one transaction and their results are kept in the query cache until the next write
+     * to the table.
+     * @param from the earliest submitted time to include, or null for no lower bound
+     * @param to the submitted time to stop before, or null for no upper bound
+     * @param topUsers how many authors and resolvers to report, those with the highest totals
+     * @return returns the counts and totals overall and by status, type, author, resolver and month. Authors and
+     * resolvers are grouped by their id
+     */
+    public RbReport getReport(Timestamp from, Timestamp to, int topUsers) {
+        StringBuilder where = new StringBuilder(" where 1 = 1");
+        if (from != null) {
+            where.append(" and r.submitted >= :from");
+        }
+        if (to != null) {
+            where.append(" and r.submitted < :to");
+        }
+        String sums = "count(r), sum(r.amount) from Reimbursement r";
+
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
-        String hql = "FROM Reimbursement where resolver_id = :id AND reimbursement_type_id = :retype";
-        Query<Reimbursement> query = session.createQuery(hql);
-        query.setParameter("resolver_id",resolverId);
-        query.setParameter("retype",reType.ordinal());
-        return mapResultListToDTO(query.list());
+        try {
+            RbReport report = new RbReport();
+            Object[] totals = reportQuery(session, "select " + sums + where, from, to).list().get(0);
+            report.setCount((Long) totals[0]);
+            report.setTotal(totals[1] == null ? 0 : (Double) totals[1]);
+
+            List<ReportGroup> byStatus = new ArrayList<>();
+            for (Object[] row : reportQuery(session, "select r.reimbursementStatus, " + sums + where
+                    + " group by r.reimbursementStatus order by r.reimbursementStatus", from, to).list()) {
+                byStatus.add(new ReportGroup(String.valueOf(row[0]), (Long) row[1], (Double) row[2]));
+            }
+            report.setByStatus(byStatus);
+
+            List<ReportGroup> byType = new ArrayList<>();
+            for (Object[] row : reportQuery(session, "select r.reimbursementType, " + sums + where
+                    + " group by r.reimbursementType order by r.reimbursementType", from, to).list()) {
+                byType.add(new ReportGroup(String.valueOf(row[0]), (Long) row[1], (Double) row[2]));
+            }
+            report.setByType(byType);
+
+            report.setByAuthor(userGroups(reportQuery(session, "select u.userId, u.firstname, u.lastname, " + sums
+                    + " join r.author u" + where + " group by u.userId, u.firstname, u.lastname"
+                    + " order by sum(r.amount) desc, u.userId", from, to).setMaxResults(topUsers).list()));
+            report.setByResolver(userGroups(reportQuery(session, "select u.userId, u.firstname, u.lastname, " + sums
+                    + " join r.resolver u" + where + " group by u.userId, u.firstname, u.lastname"
+                    + " order by sum(r.amount) desc, u.userId", from, to).setMaxResults(topUsers).list()));
+
+            List<ReportGroup> byMonth = new ArrayList<>();
+            for (Object[] row : reportQuery(session, "select year(r.submitted), month(r.submitted), " + sums + where
+                    + " group by year(r.submitted), month(r.submitted)"
+                    + " order by year(r.submitted), month(r.submitted)", from, to).list()) {
+                String month = String.format("%04d-%02d", ((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+                byMonth.add(new ReportGroup(month, (Long) row[2], (Double) row[3]));
+            }
+            report.setByMonth(byMonth);
+
+            session.getTransaction().commit();
+            return report;
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Gets who owns a reimbursement's receipt, its size and its content type, without reading the receipt itself
+     * @param reimbId the id of the reimbursement
+     * @return returns the receipt info, or empty if there is no such reimbursement or it has no receipt. Receipts kept
+     * on disk only have their hash filled in
+     */
+    public Optional<ReceiptInfo> getReceiptInfo(int reimbId) {
+        Session session = HibernateUtil.openSession();
+        session.beginTransaction();
+        try {
+            List<?> rows = session.createNativeQuery(RECEIPT_INFO_SQL)
+                    .setParameter("id", reimbId)
+                    .list();
+            session.getTransaction().commit();
+            if (rows.isEmpty()) {
+                return Optional.empty();
+            }
+            Object[] row = (Object[]) rows.get(0);
+            if (row[3] != null) {
+                return Optional.of(new ReceiptInfo(reimbId, ((Number) row[0]).intValue(), (String) row[3]));
+            }
+            if (row[1] == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new ReceiptInfo(reimbId, ((Number) row[0]).intValue(), ((Number) row[1]).longValue(),
+                    ReceiptInfo.sniffContentType((byte[]) row[2])));
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Copies part of a reimbursement's receipt to the output stream. The receipt is read RECEIPT_CHUNK_SIZE bytes at a
+     * time with substring() so that the whole receipt is never held in memory. Each chunk is read in its own short
+     * session and the connection is back in the pool before the chunk is written, so a slow client never holds one.
+     * The receipt column is stored uncompressed (migration V4), so each substring() only reads the chunk it returns.
+     * @param reimbId the id of the reimbursement
+     * @param offset the zero based offset of the first byte to copy
+     * @param length the number of bytes to copy
+     * @param out where to write the bytes
+     * @throws IOException thrown if the output stream can not be written to
+     */
+    public void streamReceipt(int reimbId, long offset, long length, OutputStream out) throws IOException {
+        StatementTracker.expectRepeats();
+        long end = offset + length;
+        for (long position = offset; position < end; position += RECEIPT_CHUNK_SIZE) {
+            byte[] bytes = readReceiptChunk(reimbId, position, (int) Math.min(RECEIPT_CHUNK_SIZE, end - position));
+            if (bytes == null || bytes.length == 0) {
+                break;
+            }
+            out.write(bytes);
+        }
+    }
+
+    private byte[] readReceiptChunk(int reimbId, long position, int length) {
+        Session session = HibernateUtil.openSession();
+        session.beginTransaction();
+        try {
+            byte[] bytes = (byte[]) session.createNativeQuery(RECEIPT_CHUNK_SQL)
+                    // an int, substring() has no bigint form and a bytea is at most 1 GB
+                    .setParameter("start", (int) position + 1)
+                    .setParameter("len", length)
+                    .setParameter("id", reimbId)
+                    .uniqueResult();
+            session.getTransaction().commit();
+            return bytes;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Runs each of the hot finder queries once, limited to a single row, so the HQL is already parsed into the query
+     * plan cache and the mapping code has been exercised before the first real request arrives.
+     */
+    public void warmUp() {
+        Session session = HibernateUtil.openSession();
+        session.beginTransaction();
+        try {
+            HibernateUtil.warmUpQuery(session, BY_STATUS_HQL, "status", ReimbursementStatus.PENDING);
+            HibernateUtil.warmUpQuery(session, BY_AUTHOR_HQL, "authorId", 0);
+            HibernateUtil.warmUpQuery(session, BY_TYPE_HQL, "type", ReimbursementType.LODGING);
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+        }
+        PageCursor start = new PageCursor(new Timestamp(0), 0);
+        for (boolean descending : new boolean[]{false, true}) {
+            getReimbPage(null, null, null, 1, descending);
+            getReimbPage(null, null, start, 1, descending);
+            getReimbPage(ReimbursementStatus.PENDING.ordinal(), null, null, 1, descending);
+            getReimbPage(ReimbursementStatus.PENDING.ordinal(), null, start, 1, descending);
+            getReimbPage(null, ReimbursementType.LODGING.ordinal(), start, 1, descending);
+        }
     }
 
     //---------------------------------- UPDATE -------------------------------------------- //
@@ -259,107 +534,154 @@ public class ReimbursementsRepository {
      * Takes in a reimbursement and updates a stored reimbursement
      * @param reimb the reimbursement instance to save
      * @return returns true if it was stored, false if it was not
+     * @throws ConcurrentUpdateException thrown if the stored reimbursement has a newer version than the one given
      */
     public boolean updateEMP(Reimbursement reimb) {
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
         try {
-            session.merge(reimb);
+            Reimbursement merged = (Reimbursement) session.merge(reimb);
+            session.getTransaction().commit();
+            reimb.setVersion(merged.getVersion());
+            return true;
         } catch (Exception e){
-            session.getTransaction().rollback();
-            session.close();
-
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            if (HibernateUtil.isConcurrentUpdate(e)) {
+                throw new ConcurrentUpdateException("This reimbursement was changed by someone else, reload it and try again");
+            }
             logger.error(e.getStackTrace());
             return false;
+        } finally {
+            session.close();
         }
-        session.getTransaction().commit();
-        session.close();
-        return true;
     }
 
     /**
-     * Updates a spcified reimbursement to either be approved or denied
+     * Approves or denies a reimbursement with a single conditional update. The status, resolver and resolved time are
+     * only set if the reimbursement is still pending, so two managers resolving the same reimbursement cannot both
+     * succeed, and nothing is loaded first. Once it commits, the reimbursement is evicted from the second level
+     * cache and the cached status and type lists are marked stale, as an update through the entity would do. Any
+     * other cached reimbursement is left where it is.
      * @param user The user who is approving or denying the reimbursement
      * @param statusId the status id to update to
      * @param reimbId the id of the reimbursement being updating
-     * @return returns true if it was updated, false if the reimbursement was not updated.
+     * @return returns true if the reimbursement went from pending to the new status, false if it does not exist, had
+     * already been resolved, or the resolver no longer exists
+     * @throws PersistenceException thrown if the database can not be reached or the update fails for any other
+     * reason
      */
-    public boolean updateFIN(User user, Integer statusId, Integer reimbId) {
-        Session session = HibernateUtil.getSessionFactory().openSession();
+    public boolean resolve(User user, Integer statusId, Integer reimbId) {
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
         try {
-            Optional<Reimbursement> reimbursement = getAReimbByReimbId(reimbId);
-            if (reimbursement.isPresent()) {
-                reimbursement.get().setReimbursementStatus(ReimbursementStatus.getByNumber(statusId));
-                reimbursement.get().setResolver(user);
-                session.update(reimbursement.get());
-            } else {
-                throw new RuntimeException();
-            }
+            int updated = session.createNativeQuery(RESOLVE_SQL)
+                    .addSynchronizedQuerySpace(RESOLVE_QUERY_SPACE)
+                    .setParameter("status", ReimbursementStatus.getByNumber(statusId).ordinal())
+                    .setParameter("resolver", user.getUserId())
+                    .setParameter("id", reimbId)
+                    .setParameter("pending", ReimbursementStatus.PENDING.ordinal())
+                    .executeUpdate();
             session.getTransaction().commit();
-            session.close();
-            return true;
-        }catch(Exception e) {
-            logger.error(e.getStackTrace());
-            session.getTransaction().rollback();
-            session.close();
+            if (updated == 1) {
+                evictResolved(session, reimbId);
+            }
+            return updated == 1;
+        } catch (PersistenceException e) {
+            // the resolver has been removed, anything else is a problem with the database and is thrown on
+            if (!(e.getCause() instanceof ConstraintViolationException)) {
+                throw e;
+            }
+            logger.error("Could not resolve reimbursement {} as user {}: {}", reimbId, user.getUserId(), e.getMessage());
             return false;
+        } finally {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            session.close();
         }
     }
 
     /**
-     * A method to update only the resolved timestamp by the id of the reimbursement
-     * @param reimbId The ID of the reimbursement in the database that is requested
-     * @param timestamp an SQL timestamp object to set the time resolved to
-     * @return returns true if one and only one record was updated
+     * Drops a reimbursement resolved by native SQL from the second level cache, and marks the cached queries over the
+     * reimbursements table as stale so the status lists are read again
+     * @param session the session that resolved it, after its transaction has committed
+     * @param reimbId the id of the reimbursement
      */
-    public boolean updateResolvedTimeStampByReimbId(Integer reimbId, Timestamp timestamp){
-        Session session = HibernateUtil.getSessionFactory().openSession();
-        session.beginTransaction();
-        session.getTransaction().commit();
-        try {
-            Optional<Reimbursement> reimbursement = getAReimbByReimbId(reimbId);
-            if(reimbursement.isPresent()) {
-                reimbursement.get().setResolved(timestamp);
-                session.merge(reimbursement);
-                session.getTransaction().commit();
-                session.close();
-                return true;
-            }
-        }catch(Exception e) {
-            logger.error(e.getStackTrace());
-            session.getTransaction().rollback();
+    private static void evictResolved(Session session, Integer reimbId) {
+        SessionFactoryImplementor factory = (SessionFactoryImplementor) session.getSessionFactory();
+        factory.getCache().evictEntityData(Reimbursement.class, reimbId);
+        TimestampsCache timestamps = factory.getCache().getTimestampsCache();
+        if (timestamps != null) {
+            timestamps.invalidate(factory.getMetamodel().entityPersister(Reimbursement.class).getPropertySpaces(),
+                    (SharedSessionContractImplementor) session);
         }
-        session.close();
-        return false;
     }
 
     /**
-     * A method to update only the resolver ID by the id of the reimbursement
-     * @param reimbId The ID of the reimbursement in the database that is requested
-     * @param resolverId the ID of the user that resolves the record to update the record to
-     * @return returns true if one and only one record was updated
+     * Approves or denies many reimbursements in one transaction. The reimbursements are loaded with a single multi id
+     * select, changed in memory, and flushed as batched JDBC updates (hibernate.jdbc.batch_size at a time), so the
+     * number of round trips does not grow with every item. Only pending reimbursements are changed; anything else is
+     * reported back without being touched. The resolved time is the database's current_timestamp, as with a single
+     * resolve. If the transaction fails nothing is changed and every item reports it.
+     * @param resolver the finance manager resolving the reimbursements
+     * @param decisions the reimbursement ids and the status, approved or denied, to give each
+     * @return returns one result per decision, in the same order
+     * @throws ConcurrentUpdateException thrown if one of the reimbursements was changed by someone else after it was
+     * loaded, in which case nothing is changed
      */
-    public boolean updateResolverIdByReimbId(Integer reimbId, Integer resolverId){
-        Session session = HibernateUtil.getSessionFactory().openSession();
+    public List<ApproveDenyResult> resolveAll(User resolver, List<ApproveDeny> decisions) {
+        List<Integer> ids = new ArrayList<>(decisions.size());
+        for (ApproveDeny decision : decisions) {
+            ids.add(decision.getId());
+        }
+        List<ApproveDenyResult> results = new ArrayList<>(decisions.size());
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
-        session.getTransaction().commit();
         try {
-            Optional<Reimbursement> reimbursement = getAReimbByReimbId(reimbId);
-            if(reimbursement.isPresent()) {
-                User resolver = UserService.getInstance().getAUserById(resolverId);
-                reimbursement.get().setResolver(resolver);
-                session.merge(reimbursement);
-                session.getTransaction().commit();
-                session.close();
-                return true;
+            Timestamp now = (Timestamp) session.createNativeQuery(NOW_SQL).getSingleResult();
+            Map<Integer, Reimbursement> byId = new HashMap<>();
+            for (Reimbursement reimbursement : session.byMultipleIds(Reimbursement.class).multiLoad(ids)) {
+                if (reimbursement != null) {
+                    byId.put(reimbursement.getId(), reimbursement);
+                }
             }
-        }catch(Exception e) {
-            logger.error(e.getStackTrace());
-            session.getTransaction().rollback();
+            User resolverRef = session.load(User.class, resolver.getUserId());
+            for (ApproveDeny decision : decisions) {
+                Reimbursement reimbursement = byId.get(decision.getId());
+                if (reimbursement == null) {
+                    results.add(new ApproveDenyResult(decision.getId(), decision.getStatus(), false, "No such reimbursement"));
+                } else if (reimbursement.getReimbursementStatus() != ReimbursementStatus.PENDING) {
+                    results.add(new ApproveDenyResult(decision.getId(), decision.getStatus(), false,
+                            "Reimbursement is " + reimbursement.getReimbursementStatus() + ", not Pending"));
+                } else {
+                    reimbursement.setReimbursementStatus(ReimbursementStatus.getByNumber(decision.getStatus()));
+                    reimbursement.setResolver(resolverRef);
+                    reimbursement.setResolved(now);
+                    results.add(new ApproveDenyResult(decision.getId(), decision.getStatus(), true, null));
+                }
+            }
+            session.getTransaction().commit();
+            return results;
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            if (HibernateUtil.isConcurrentUpdate(e)) {
+                throw new ConcurrentUpdateException("A reimbursement in this batch was changed by someone else, "
+                        + "nothing was resolved. Reload them and try again");
+            }
+            logger.error("Batch approve/deny failed: {}", e.getMessage());
+            List<ApproveDenyResult> failed = new ArrayList<>(decisions.size());
+            for (ApproveDeny decision : decisions) {
+                failed.add(new ApproveDenyResult(decision.getId(), decision.getStatus(), false,
+                        "Batch was rolled back: " + e.getMessage()));
+            }
+            return failed;
+        } finally {
+            session.close();
         }
-        session.close();
-        return false;
     }
 
     /**
@@ -369,7 +691,7 @@ public class ReimbursementsRepository {
      * @return returns true if one and only one record was updated
      */
     public boolean updateReimbursementTypeByReimbId(Integer reimbId, ReimbursementType reimbursementType){
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
         session.getTransaction().commit();
         try {
@@ -396,7 +718,7 @@ public class ReimbursementsRepository {
      * @return returns true if one and only one record was updated
      */
     public boolean updateReimbursementStatusByReimbId(Integer reimbId, ReimbursementStatus newReimbStatus){
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
         session.getTransaction().commit();
         try {
@@ -425,7 +747,7 @@ public class ReimbursementsRepository {
      * @return returns true if one and only one record is updated
      */
     public boolean delete(Integer reimbId){
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
         session.getTransaction().commit();
         try {
@@ -446,24 +768,89 @@ public class ReimbursementsRepository {
     //---------------------------------- UTIL -------------------------------------------- //
 
     /**
-     * A helper method that converts a list of reimbursements into a list of RbDTOs.
-     * @param reimbursements the list of reimbursements to be converted
-     * @return returns a list of RbDTOs that represent the reimbursements.
+     * A helper method that runs a projection query in its own session and returns the RbDTOs it selects.
+     * @param hql the select new RbDTO query to run
+     * @param params alternating parameter names and values
+     * @return returns the list of RbDTOs
+     */
+    private List<RbDTO> listDTOs(String hql, Object... params) {
+        return queryDTOs(false, hql, params);
+    }
+
+    /**
+     * Like listDTOs, but the results are kept in the query cache region QUERY_CACHE_REGION
+     * @param hql the select new RbDTO query to run
+     * @param params alternating parameter names and values
+     * @return returns the list of RbDTOs
+     */
+    private List<RbDTO> listCachedDTOs(String hql, Object... params) {
+        return queryDTOs(true, hql, params);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Query<Object[]> reportQuery(Session session, String hql, Timestamp from, Timestamp to) {
+        Query<Object[]> query = session.createQuery(hql);
+        query.setCacheable(true).setCacheRegion(QUERY_CACHE_REGION);
+        if (from != null) {
+            query.setParameter("from", from);
+        }
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        return query;
+    }
+
+    private static List<ReportGroup> userGroups(List<Object[]> rows) {
+        List<ReportGroup> groups = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            groups.add(new ReportGroup((Integer) row[0], row[1] + " " + row[2], (Long) row[3], (Double) row[4]));
+        }
+        return groups;
+    }
+
+    private List<RbDTO> queryDTOs(boolean cacheable, String hql, Object... params) {
+        Session session = HibernateUtil.openSession();
+        session.beginTransaction();
+        try {
+            Query<RbDTO> query = session.createQuery(hql, RbDTO.class);
+            if (cacheable) {
+                query.setCacheable(true).setCacheRegion(QUERY_CACHE_REGION);
+            }
+            for (int i = 0; i < params.length; i += 2) {
+                query.setParameter((String) params[i], params[i + 1]);
+            }
+            List<RbDTO> reimbursements = query.list();
+            session.getTransaction().commit();
+            return reimbursements;
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * A helper method that converts rows selected with DTO_COLUMNS into RbDTOs. Package-private for the benchmarks.
+     * @param rows the selected rows, each in DTO_COLUMNS order
+     * @return returns an RbDTO for each row, in the same order.
+     */
+    static List<RbDTO> mapResultListToDTO(List<Object[]> rows) {
+        List<RbDTO> reimbursements = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            reimbursements.add(mapRowToDTO(row));
+        }
+        return reimbursements;
+    }
+
+    /**
+     * A helper method that converts a row selected with DTO_COLUMNS into an RbDTO.
+     * @param row the selected columns, in DTO_COLUMNS order
+     * @return returns an RbDTO that represents the row.
      */
-    private List<RbDTO> mapResultListToDTO(List<Reimbursement> reimbursements) {
-        List<RbDTO> reimbs = new ArrayList<>();
-        for(Reimbursement objs: reimbursements) {
-            RbDTO rbDTO = new RbDTO();
-            rbDTO.setId(objs.getId());
-            rbDTO.setAmount(objs.getAmount());
-            rbDTO.setSubmitted(objs.getSubmitted().toString().substring(0,19));
-            rbDTO.setDescription(objs.getDescription());
-            rbDTO.setAuthorName(objs.getAuthor().getFirstname()+" "+objs.getAuthor().getLastname());
-            rbDTO.setStatus(objs.getReimbursementStatus().toString());
-            rbDTO.setType(objs.getReimbursementStatus().toString());
-            reimbs.add(rbDTO);
-        }
-
-        return reimbs;
+    private static RbDTO mapRowToDTO(Object[] row) {
+        return new RbDTO((Integer) row[0], (Double) row[1], (Timestamp) row[2], (Timestamp) row[3], (String) row[4],
+                (String) row[5], (String) row[6], (String) row[7], (String) row[8],
+                (ReimbursementStatus) row[9], (ReimbursementType) row[10], (Integer) row[11]);
     }
 }
@@ -1,8 +1,11 @@
 package com.revature.repositories;
 
+import com.revature.exceptions.ConcurrentUpdateException;
 import com.revature.models.User;
 import com.revature.util.HibernateUtil;
 import com.revature.util.PasswordHash;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
 
@@ -12,6 +15,11 @@ import java.util.*;
  * Handles all CRUD methods accessing the User table in the database. Uses Hibernate
  */
 public class UserRepository {
+    private static final Logger logger = LogManager.getLogger(UserRepository.class);
+
+    // the hot finder queries, kept as constants so warmUp() compiles exactly the same HQL into the query plan cache.
+    // Lookups by id and by username go through the second level cache instead of a query
+    private static final String BY_EMAIL_HQL = "FROM User WHERE email = :email";
 
     /**
      * Empty constructor
@@ -23,28 +31,29 @@ public class UserRepository {
     //---------------------------------- CREATE -------------------------------------------- //
 
     /**
-     * A method tho add a new user to the database, hashes passwords before inserting
+     * A method tho add a new user to the database, hashes passwords before inserting. With ids.sequence the insert
+     * only runs at commit, so a constraint violation is caught there too
      * @param newUser the user to be added
-     * @return returns true if one and only one row was inserted
+     * @return returns true if one and only one row was inserted, false if the database rejected it
      */
     public boolean addUser(User newUser)  {
-        newUser.setPassword(PasswordHash.getInstance().hashing(newUser.getPassword()));
+        newUser.setPassword(PasswordHash.getInstance().hash(newUser.getPassword()));
 
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
-
         try {
             session.save(newUser);
+            session.getTransaction().commit();
+            return true;
         } catch (Exception e){
-            session.getTransaction().rollback();
-            session.close();
-            e.printStackTrace();
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            logger.error("Could not add user {}: {}", newUser.getUsername(), e.getMessage());
             return false;
+        } finally {
+            session.close();
         }
-
-        session.getTransaction().commit();
-        session.close();
-        return true;
     }
 
     //---------------------------------- READ -------------------------------------------- //
@@ -55,7 +64,7 @@ public class UserRepository {
      */
     @SuppressWarnings("unchecked")
     public List<User> getAllusers() {
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
         String hql = "From User";
         Query<User> query = session.createQuery(hql);
@@ -63,24 +72,19 @@ public class UserRepository {
     }
 
     /**
-     * Gets a spcific user with a specified id
+     * Gets a spcific user with a specified id. Served from the second level cache when the user is in it
      * @param id the id of the user being searched for
      * @return returns an optional of the user. Contains null if the user is not found
      */
-    @SuppressWarnings("unchecked")
     public Optional<User> getAUserByUserId(int id) {
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
-        String hql = "FROM User WHERE id = :id";
-        Query<User> query = session.createQuery(hql);
-        query.setParameter("id", id);
-        List<User> list = query.list();
-        session.getTransaction().commit();
-        session.close();
-        if (list.size() == 0) {
-            return Optional.empty();
-        } else {
-            return Optional.of(list.get(0));
+        try {
+            User user = session.get(User.class, id);
+            session.getTransaction().commit();
+            return Optional.ofNullable(user);
+        } finally {
+            session.close();
         }
     }
 
@@ -91,9 +95,9 @@ public class UserRepository {
      */
     @SuppressWarnings("unchecked")
     public Optional<User> getAUserByEmail(String email) {
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
-        String hql = "FROM User WHERE email = :email";
+        String hql = BY_EMAIL_HQL;
         Query<User> query = session.createQuery(hql);
         query.setParameter("email", email);
         List<User> list = query.list();
@@ -107,53 +111,56 @@ public class UserRepository {
     }
 
     /**
-     * Gets a specific user by their username
+     * Gets a specific user by their username. The username is the natural id of a user, so the id it resolves to and
+     * the user itself are both served from the second level cache when they are in it
      * @param userName the username of the searched for user
      * @return returns an optional of the user. Contains null if the user isn't found
      */
-    @SuppressWarnings("unchecked")
     public Optional<User> getAUserByUsername(String userName) {
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
-        String hql = "FROM User where username = :userName";
-        Query<User> query = session.createQuery(hql);
-        query.setParameter("userName",userName);
-        List<User> list = query.list();
-        session.getTransaction().commit();
-        session.close();
-        if (list.size() == 0) {
-            return Optional.empty();
-        } else {
-            return Optional.of(list.get(0));
+        try {
+            Optional<User> user = session.bySimpleNaturalId(User.class).loadOptional(userName);
+            session.getTransaction().commit();
+            return user;
+        } finally {
+            session.close();
         }
     }
 
     /**
-     * A method to get a single user by a given username and password
+     * A method to get a single user by a given username and password. The user is loaded by username, through the
+     * second level cache, and the password is checked against the stored hash in the JVM. A hash in an old format or
+     * made at a lower cost than is configured now is replaced with a new one while the password is at hand
      * @param userName the users username
      * @param password the users password
-     * @return returns an optional user
+     * @return returns an optional user, empty if there is no such user or the password does not match
+     * @throws java.util.concurrent.RejectedExecutionException thrown if too many logins are waiting to be checked
      */
-    @SuppressWarnings("unchecked")
     public Optional<User> getAUserByUsernameAndPassword(String userName, String password) {
-        password = PasswordHash.getInstance().hashing(password);
+        PasswordHash passwordHash = PasswordHash.getInstance();
+        Optional<User> user = getAUserByUsername(userName);
+        if (!passwordHash.verify(password, user.map(User::getPassword).orElse(null))) {
+            return Optional.empty();
+        }
+        if (passwordHash.needsRehash(user.get().getPassword())) {
+            updatePasswordHash(user.get(), passwordHash.hash(password));
+        }
+        return user;
+    }
 
-        Session session = HibernateUtil.getSessionFactory().openSession();
+    /**
+     * Runs each of the hot finder queries once, limited to a single row, so the HQL is already parsed into the query
+     * plan cache before the first real request arrives.
+     */
+    public void warmUp() {
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
         try {
-            String hql = "FROM User WHERE username = :name AND password = :pass";
-            Query<User> query = session.createQuery(hql);
-            query.setParameter("name",userName);
-            query.setParameter("pass", password);
-            List<User> results = query.list();
+            HibernateUtil.warmUpQuery(session, BY_EMAIL_HQL, "email", "");
             session.getTransaction().commit();
+        } finally {
             session.close();
-            return Optional.of(results.get(0));
-        } catch (Exception e){
-            //session.getTransaction().rollback();
-            session.close();
-            e.printStackTrace();
-            return Optional.empty();
         }
     }
 
@@ -161,27 +168,59 @@ public class UserRepository {
 
     /**
      * Updates a user in the database with information from the inputted user
-     * @param newUser the user to update
+     * @param newUser the user to update, its password is the new password in plain text and is always hashed
      * @return returns true if an entry was updated, else returns false
+     * @throws ConcurrentUpdateException thrown if the stored user has a newer version than the one given
      */
     public boolean updateAUser(User newUser) {
-        newUser.setPassword(PasswordHash.getInstance().hashing(newUser.getPassword()));
+        newUser.setPassword(PasswordHash.getInstance().hash(newUser.getPassword()));
 
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
         try {
-            //session.evict(newUser)?
-            session.merge(newUser);
+            User merged = (User) session.merge(newUser);
+            session.getTransaction().commit();
+            // the caller keeps newUser, e.g. in the user cache, so it must carry the version that was just written
+            newUser.setVersion(merged.getVersion());
+            return true;
         } catch (Exception e){
-            session.getTransaction().rollback();
-            session.close();
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            if (HibernateUtil.isConcurrentUpdate(e)) {
+                throw new ConcurrentUpdateException("This user was changed by someone else, reload it and try again");
+            }
             e.printStackTrace();
             return false;
+        } finally {
+            session.close();
         }
+    }
 
-        session.getTransaction().commit();
-        session.close();
-        return true;
+    /**
+     * Replaces the stored password hash of a user, e.g. after upgrading it to the current format. A failure is only
+     * logged, the user keeps the old hash and is upgraded at the next login
+     * @param user the user, its password and version are set to the stored ones on success
+     * @param newHash the new hash
+     */
+    public void updatePasswordHash(User user, String newHash) {
+        Session session = HibernateUtil.openSession();
+        session.beginTransaction();
+        try {
+            User stored = session.get(User.class, user.getUserId());
+            stored.setPassword(newHash);
+            session.getTransaction().commit();
+            user.setPassword(newHash);
+            user.setVersion(stored.getVersion());
+        } catch (Exception e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            logger.warn("Could not store the new password hash of user {}, the old one is kept until the next login",
+                    user.getUserId(), e);
+        } finally {
+            session.close();
+        }
     }
 
     //---------------------------------- DELETE -------------------------------------------- //
@@ -192,7 +231,7 @@ public class UserRepository {
      * @return returns true if one and only one record is updated
      */
     public boolean deleteAUserById(Integer userId) {
-        Session session = HibernateUtil.getSessionFactory().openSession();
+        Session session = HibernateUtil.openSession();
         session.beginTransaction();
 
         try {
@@ -1,26 +1,71 @@
 package com.revature.services;
 
+import com.revature.dtos.ApproveDeny;
+import com.revature.dtos.ApproveDenyResult;
+import com.revature.dtos.ImportReport;
 import com.revature.dtos.RbDTO;
+import com.revature.dtos.RbPage;
+import com.revature.dtos.RbReport;
+import com.revature.dtos.ReceiptInfo;
+import com.revature.exceptions.ConcurrentUpdateException;
 import com.revature.exceptions.InvalidIdException;
+import com.revature.exceptions.InvalidPageRequestException;
+import com.revature.exceptions.InvalidReportRequestException;
 import com.revature.exceptions.InvalidUserFieldsException;
 import com.revature.exceptions.NoReimbursementsException;
 import com.revature.exceptions.ReimbursementSaveException;
 import com.revature.models.Reimbursement;
 import com.revature.models.ReimbursementStatus;
 import com.revature.models.ReimbursementType;
+import com.revature.models.Role;
 import com.revature.models.User;
+import com.revature.repositories.DatabaseReceiptStore;
+import com.revature.repositories.FileReceiptStore;
+import com.revature.repositories.ReceiptStore;
 import com.revature.repositories.ReimbursementsRepository;
+import com.revature.util.AppConfig;
+import com.revature.util.PageCursor;
+import com.revature.util.StatementTracker;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Service layer for validating reimbursements before sending to or from the Database. Implements the Singleton model.
  */
 public class ReimbursementService {
+    private static final Logger logger = LogManager.getLogger(ReimbursementService.class);
+    private static final int DEFAULT_PAGE_SIZE = 25;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int DEFAULT_REPORT_USERS = 10;
+    private static final int MAX_REPORT_USERS = 100;
+    private static final int IMPORT_CHUNK_SIZE = AppConfig.getInt("import.chunkSize", 500);
+    // the amount column is numeric(6,2) and the description column varchar(1000)
+    private static final long MAX_AMOUNT_CENTS = 999_999;
+    private static final int MAX_DESCRIPTION_LENGTH = 1000;
+
     private final ReimbursementsRepository reimbRepo = new ReimbursementsRepository();
+    private final ReceiptStore receiptStore = "file".equalsIgnoreCase(AppConfig.get("receipts.store", "database"))
+            ? new FileReceiptStore(Paths.get(AppConfig.get("receipts.dir", "receipts")))
+            : new DatabaseReceiptStore();
     private final static ReimbursementService reimbService = new ReimbursementService();
 
     private ReimbursementService() {
@@ -136,6 +181,136 @@ public class ReimbursementService {
         return reimb;
     }
 
+    /**
+     * Gets a single page of reimbursements using keyset pagination on (submitted, id)
+     * @param statusId ordinal number of the status requested, between 1-3, or null for every status
+     * @param typeId ordinal number of the type requested, between 1-4, or null for every type
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the number of reimbursements per page, defaults to 25 and cannot exceed 500
+     * @param sort either submitted (oldest first) or -submitted (newest first), defaults to submitted
+     * @return A page of RbDTO objects with the cursor of the next page
+     */
+    public RbPage getReimbPage(Integer statusId, Integer typeId, String after, Integer limit, String sort) {
+        if (statusId != null && (statusId <= 0 || statusId >= 4)) {
+            throw new InvalidIdException("THE PROVIDED STATUS ID MUST BE BETWEEN 1 AND 3");
+        }
+        if (typeId != null && (typeId <= 0 || typeId >= 5)) {
+            throw new InvalidIdException("THE PROVIDED TYPE ID MUST BE BETWEEN 1 AND 4");
+        }
+        if (limit == null) {
+            limit = DEFAULT_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidPageRequestException("The page limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        boolean descending;
+        if (sort == null || sort.trim().equals("") || sort.equals("submitted")) {
+            descending = false;
+        } else if (sort.equals("-submitted")) {
+            descending = true;
+        } else {
+            throw new InvalidPageRequestException("Reimbursements can only be sorted by submitted or -submitted");
+        }
+        PageCursor cursor = (after == null || after.trim().equals("")) ? null : PageCursor.decode(after);
+        return reimbRepo.getReimbPage(statusId, typeId, cursor, limit, descending);
+    }
+
+    /**
+     * Summarises the reimbursements submitted between two days, computed in the database
+     * @param from the first day to include as yyyy-MM-dd, or null for no lower bound
+     * @param to the last day to include as yyyy-MM-dd, or null for no upper bound
+     * @param top how many authors and resolvers to list, defaults to 10 and cannot exceed 100
+     * @return the counts and totals overall and by status, type, author, resolver and month
+     * @throws InvalidReportRequestException thrown if a day can not be read, the range is backwards, or top is out of range
+     */
+    public RbReport getReport(String from, String to, Integer top) {
+        if (top == null) {
+            top = DEFAULT_REPORT_USERS;
+        }
+        if (top <= 0 || top > MAX_REPORT_USERS) {
+            throw new InvalidReportRequestException("The number of users must be between 1 and " + MAX_REPORT_USERS);
+        }
+        LocalDate first = parseDay(from);
+        LocalDate last = parseDay(to);
+        if (first != null && last != null && first.isAfter(last)) {
+            throw new InvalidReportRequestException("The from day must not be after the to day");
+        }
+        RbReport report = reimbRepo.getReport(first == null ? null : Timestamp.valueOf(first.atStartOfDay()),
+                last == null ? null : Timestamp.valueOf(last.plusDays(1).atStartOfDay()), top);
+        report.setFrom(first == null ? null : first.toString());
+        report.setTo(last == null ? null : last.toString());
+        return report;
+    }
+
+    private static LocalDate parseDay(String day) {
+        if (day == null || day.trim().equals("")) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(day.trim());
+        } catch (DateTimeParseException e) {
+            throw new InvalidReportRequestException("Days must be given as yyyy-MM-dd, not " + day);
+        }
+    }
+
+    /**
+     * Streams all reimbursements, optionally filtered by status and type, to the consumer one at a time without
+     * building a list
+     * @param statusId ordinal number of the status requested, between 1-3, or null for every status
+     * @param typeId ordinal number of the type requested, between 1-4, or null for every type
+     * @param consumer called once for every reimbursement
+     */
+    public void streamReimb(Integer statusId, Integer typeId, Consumer<RbDTO> consumer) {
+        if (statusId != null && (statusId <= 0 || statusId >= 4)) {
+            throw new InvalidIdException("THE PROVIDED STATUS ID MUST BE BETWEEN 1 AND 3");
+        }
+        if (typeId != null && (typeId <= 0 || typeId >= 5)) {
+            throw new InvalidIdException("THE PROVIDED TYPE ID MUST BE BETWEEN 1 AND 4");
+        }
+        reimbRepo.streamReimbursements(statusId, typeId, consumer);
+    }
+
+    /**
+     * Gets the size and content type of a reimbursement's receipt after checking that the user may see it. Finance
+     * managers may see every receipt, employees only the receipts of their own reimbursements.
+     * @param user the user requesting the receipt
+     * @param reimbId the id of the reimbursement
+     * @return returns the receipt info
+     * @throws NoReimbursementsException thrown if there is no such receipt the user may see
+     */
+    public ReceiptInfo getReceiptInfo(User user, Integer reimbId) {
+        if (reimbId <= 0){
+            throw new InvalidIdException("THE PROVIDED REIMBURSEMENT ID CANNOT BE LESS THAN OR EQUAL TO ZERO");
+        }
+        Optional<ReceiptInfo> info = reimbRepo.getReceiptInfo(reimbId);
+        if (!info.isPresent() || (user.getUserRole() != Role.FINANCE_MANAGER.ordinal()
+                && info.get().getAuthorId() != user.getUserId())) {
+            throw new NoReimbursementsException("could not find a receipt for the requested reimbursement.");
+        }
+        return info.get();
+    }
+
+    /**
+     * Writes part of a receipt to the output stream without loading the whole receipt
+     * @param reimbId the id of the reimbursement, already checked with getReceiptInfo
+     * @param offset the zero based offset of the first byte to write
+     * @param length the number of bytes to write
+     * @param out where to write the bytes
+     * @throws IOException thrown if the output stream can not be written to
+     */
+    public void writeReceipt(Integer reimbId, long offset, long length, OutputStream out) throws IOException {
+        reimbRepo.streamReceipt(reimbId, offset, length, out);
+    }
+
+    /**
+     * Finds a receipt kept on disk by its content hash. This does not touch the database.
+     * @param hash the SHA-256 hash of the receipt
+     * @return returns the path of the receipt file, or empty if there is no such receipt
+     */
+    public Optional<Path> locateReceipt(String hash) {
+        return receiptStore.locate(hash);
+    }
+
     /**
      * Saves a reimbursement after validation
      * @param reimb the completed reimbursement object
@@ -159,12 +334,111 @@ public class ReimbursementService {
         reimbursement.setAuthor(user);
         reimbursement.setAmount(rbdto.getAmount());
         reimbursement.setDescription(rbdto.getDescription());
-        reimbursement.setReceipt(rbdto.getImage());
+        if (rbdto.getImage() != null) {
+            try {
+                receiptStore.store(reimbursement, rbdto.getImage());
+            } catch (IOException e) {
+                throw new ReimbursementSaveException("Something went wrong trying to save the receipt");
+            }
+        }
         reimbursement.setReimbursementType(ReimbursementType.valueOf(rbdto.getType()));
         reimbursement.setReimbursementStatus(ReimbursementStatus.valueOf(rbdto.getStatus()));
         save(reimbursement);
     }
 
+    /**
+     * Imports reimbursements for an author, reading the rows one at a time and saving them in chunks of
+     * import.chunkSize, so only one chunk is ever held in memory. Each row is validated like a single submission and
+     * imported as pending; rows that are not valid are counted and skipped. A row that can not be read at all stops
+     * the import. If the database rejects a chunk, its rows are saved again one at a time, so only the rows it
+     * rejects on their own are reported.
+     * @param user The author of the reimbursements
+     * @param rows the rows to import, an iterator may throw a RuntimeException for a row it can not read
+     * @return returns a report of how many rows were imported and why the others were not
+     */
+    public ImportReport importReimbursements(User user, Iterator<RbDTO> rows) {
+        long start = System.nanoTime();
+        // one insert per row, or one batch per chunk, is the point of an import rather than an N+1
+        StatementTracker.expectRepeats();
+        ImportReport report = new ImportReport();
+        List<Reimbursement> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        List<Integer> chunkRows = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        while (true) {
+            RbDTO row;
+            try {
+                if (!rows.hasNext()) break;
+                row = rows.next();
+            } catch (RuntimeException e) {
+                report.reject(report.getRead() + 1, "Could not be read, the import was stopped: " + e.getMessage());
+                report.setCompleted(false);
+                break;
+            }
+            report.setRead(report.getRead() + 1);
+            Reimbursement reimbursement = toImportedReimbursement(user, row);
+            String problem = validationProblem(reimbursement);
+            if (problem != null) {
+                report.reject(report.getRead(), problem);
+                continue;
+            }
+            if (row.getImage() != null) {
+                try {
+                    receiptStore.store(reimbursement, row.getImage());
+                } catch (IOException e) {
+                    report.reject(report.getRead(), "Could not save the receipt");
+                    continue;
+                }
+            }
+            chunk.add(reimbursement);
+            chunkRows.add(report.getRead());
+            if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                saveImportChunk(chunk, chunkRows, report);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveImportChunk(chunk, chunkRows, report);
+        }
+        report.setMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    /**
+     * Saves a chunk of imported reimbursements in one transaction. If the database rejects it, every row is saved again
+     * in a transaction of its own, so one bad row costs the rest of the chunk only the extra round trips
+     * @param chunk the reimbursements to save, emptied afterwards
+     * @param rows the row each reimbursement was read from, emptied afterwards
+     * @param report the report to count the imported rows in and to reject the rows that could not be saved in
+     */
+    private void saveImportChunk(List<Reimbursement> chunk, List<Integer> rows, ImportReport report) {
+        if (reimbRepo.addReimbursements(chunk)) {
+            report.setImported(report.getImported() + chunk.size());
+        } else {
+            for (int i = 0; i < chunk.size(); i++) {
+                if (reimbRepo.addReimbursements(Collections.singletonList(chunk.get(i)))) {
+                    report.setImported(report.getImported() + 1);
+                } else {
+                    report.reject(rows.get(i), "Could not be saved by the database");
+                }
+            }
+        }
+        chunk.clear();
+        rows.clear();
+    }
+
+    private static Reimbursement toImportedReimbursement(User user, RbDTO row) {
+        Reimbursement reimbursement = new Reimbursement();
+        if (row == null) return reimbursement;
+        reimbursement.setAuthor(user);
+        reimbursement.setAmount(row.getAmount());
+        reimbursement.setDescription(row.getDescription());
+        reimbursement.setReimbursementStatus(ReimbursementStatus.PENDING);
+        for (ReimbursementType type : ReimbursementType.values()) {
+            if (type.name().equalsIgnoreCase(row.getType()) || type.toString().equalsIgnoreCase(row.getType())) {
+                reimbursement.setReimbursementType(type);
+            }
+        }
+        return reimbursement;
+    }
+
     /**
      * Update a reimbursement
      * @param reimb the completed reimbursement object
@@ -180,9 +454,11 @@ public class ReimbursementService {
     }
 
     /**
-     * Updates a reimbursement by a RbDTO and User
+     * Updates a reimbursement by a RbDTO and User. If the RbDTO has the version it was read at, the update is rejected
+     * when the reimbursement has changed since
      * @param reimb The RbDTO to use to update the reimbursement
      * @param user the author who is updating the reimbursement
+     * @throws ConcurrentUpdateException thrown if the reimbursement was changed after the RbDTO was read
      */
     public void updateReimbursemntByRbDTO(RbDTO reimb, User user) {
         try {
@@ -198,11 +474,16 @@ public class ReimbursementService {
                 if (reimb.getStatus() != null) {
                     updated_reimb.setReimbursementStatus(ReimbursementStatus.valueOf(reimb.getStatus()));
                 }
+                if (reimb.getVersion() != null) {
+                    updated_reimb.setVersion(reimb.getVersion());
+                }
                 reimbRepo.updateEMP(updated_reimb);
             } else {
                 throw new RuntimeException("This account has no such reimbursement to update!");
             }
 
+        }catch(ConcurrentUpdateException e) {
+            throw e;
         }catch(Exception e) {
             e.printStackTrace();
         }
@@ -212,13 +493,14 @@ public class ReimbursementService {
      * Approve a Reimb.
      * @param user the user of the fin manager resolving the reimb.
      * @param reimbId id of the Reimb. to approve or disapprove.
+     * @throws ConcurrentUpdateException thrown if the reimbursement has already been resolved
      */
     public void approve(User user, Integer reimbId) {
         if (reimbId <= 0 || user.getUserId() <=0){
             throw new InvalidUserFieldsException("Invalid user field values provided!");
         }
-        if(!reimbRepo.updateFIN(user, 2, reimbId)){
-            throw new ReimbursementSaveException("Something went wrong trying to approve this reimbursement");
+        if(!reimbRepo.resolve(user, 2, reimbId)){
+            throw resolveFailure(reimbId, "approved");
         }
     }
 
@@ -226,22 +508,95 @@ public class ReimbursementService {
      * Deny a reimb.
      * @param user the user of the fin manager resolving the reimb.
      * @param reimbId id of the Reimb. to approve or disapprove.
+     * @throws ConcurrentUpdateException thrown if the reimbursement has already been resolved
      */
     public void deny(User user, Integer reimbId) {
         if (reimbId <= 0){
             throw new InvalidUserFieldsException("Invalid user field values provided!");
         }
-        if(!reimbRepo.updateFIN(user, 3, reimbId)){
-            throw new ReimbursementSaveException("Something went wrong trying to deny this reimbursement");
+        if(!reimbRepo.resolve(user, 3, reimbId)){
+            throw resolveFailure(reimbId, "denied");
+        }
+    }
+
+    /**
+     * Works out why a reimbursement could not be resolved. Only called once the update has failed, so approving and
+     * denying stay a single statement
+     * @param reimbId id of the Reimb. that was not resolved
+     * @param action approved or denied
+     * @return returns a ConcurrentUpdateException if the reimbursement is no longer pending, otherwise a
+     * ReimbursementSaveException
+     */
+    private RuntimeException resolveFailure(Integer reimbId, String action) {
+        try {
+            Optional<Reimbursement> reimbursement = reimbRepo.getAReimbByReimbId(reimbId);
+            if (!reimbursement.isPresent()) {
+                return new ReimbursementSaveException("This reimbursement does not exist, it could not be " + action);
+            }
+            if (reimbursement.get().getReimbursementStatus() != ReimbursementStatus.PENDING) {
+                return new ConcurrentUpdateException("This reimbursement has already been "
+                        + reimbursement.get().getReimbursementStatus().toString().toLowerCase() + ", it could not be " + action);
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.error("Could not check why reimbursement {} was not {}", reimbId, action, e);
+        }
+        return new ReimbursementSaveException("Something went wrong trying to save this reimbursement, it could not be " + action);
+    }
+
+    /**
+     * Approves or denies many reimbursements at once, in a single transaction. Items that are not a valid approve or
+     * deny are reported back without being sent to the database. A batch that both approves and denies the same
+     * reimbursement is rejected as a whole.
+     * @param user the finance manager resolving the reimbursements
+     * @param decisions the reimbursement ids and the status, approved or denied, to give each
+     * @return returns one result per decision, in the same order
+     * @throws ConcurrentUpdateException thrown if one of the reimbursements was changed by someone else while the
+     * batch ran, in which case none of them are resolved
+     */
+    public List<ApproveDenyResult> resolveAll(User user, List<ApproveDeny> decisions) {
+        if (user.getUserId() <= 0 || decisions == null || decisions.isEmpty()) {
+            throw new InvalidUserFieldsException("Invalid user field values provided!");
+        }
+        if (decisions.size() > MAX_BATCH_SIZE) {
+            throw new InvalidUserFieldsException("At most " + MAX_BATCH_SIZE + " reimbursements can be resolved at once");
+        }
+        List<ApproveDeny> valid = new ArrayList<>(decisions.size());
+        Map<ApproveDeny, ApproveDenyResult> rejected = new IdentityHashMap<>();
+        Map<Integer, Integer> statusById = new HashMap<>();
+        for (ApproveDeny decision : decisions) {
+            if (decision == null || decision.getId() == null || decision.getId() <= 0) {
+                rejected.put(decision, new ApproveDenyResult(decision == null ? null : decision.getId(),
+                        decision == null ? null : decision.getStatus(), false, "Invalid reimbursement id"));
+            } else if (decision.getStatus() == null || (decision.getStatus() != ReimbursementStatus.APPROVED.ordinal()
+                    && decision.getStatus() != ReimbursementStatus.DENIED.ordinal())) {
+                rejected.put(decision, new ApproveDenyResult(decision.getId(), decision.getStatus(), false,
+                        "Status must be approved (2) or denied (3)"));
+            } else {
+                Integer other = statusById.putIfAbsent(decision.getId(), decision.getStatus());
+                if (other != null && !other.equals(decision.getStatus())) {
+                    throw new InvalidUserFieldsException("Reimbursement " + decision.getId()
+                            + " is both approved and denied in this batch");
+                }
+                valid.add(decision);
+            }
+        }
+        Iterator<ApproveDenyResult> applied = valid.isEmpty()
+                ? Collections.<ApproveDenyResult>emptyIterator()
+                : reimbRepo.resolveAll(user, valid).iterator();
+        List<ApproveDenyResult> results = new ArrayList<>(decisions.size());
+        for (ApproveDeny decision : decisions) {
+            ApproveDenyResult result = rejected.get(decision);
+            results.add(result != null ? result : applied.next());
         }
+        return results;
     }
 
     /**
-     * A helper method that converts a reimbursement to a RbDTO
+     * A helper method that converts a reimbursement to a RbDTO. Package-private for the benchmarks.
      * @param reimb the reimbursement to convert
      * @return returns an RbDTO representation
      */
-    private RbDTO reimbursementToRbDTO(Reimbursement reimb) {
+    RbDTO reimbursementToRbDTO(Reimbursement reimb) {
         RbDTO rbDTO = new RbDTO();
 
         rbDTO.setStatus(reimb.getReimbursementStatus().name());
@@ -251,7 +606,7 @@ public class ReimbursementService {
         rbDTO.setSubmitted(reimb.getSubmitted().toString());
         rbDTO.setType(reimb.getReimbursementType().name());
         rbDTO.setAuthorName(reimb.getAuthor().getFirstname()+" "+reimb.getAuthor().getLastname());
-        rbDTO.setImage(reimb.getReceipt());
+        rbDTO.setVersion(reimb.getVersion());
 
         if (reimb.getResolved() != null) {
             rbDTO.setResolved(reimb.getResolved().toString());
@@ -269,12 +624,25 @@ public class ReimbursementService {
      * @return true or false based on fields
      */
     public boolean isReimbursementValid(Reimbursement reimb){
-        if (reimb == null) return false;
-        if (reimb.getAmount() == null || reimb.getAmount() <= 0 ) return false;
-        if (reimb.getDescription() == null || reimb.getDescription().trim().equals("")) return false;
-        if (reimb.getAuthor() == null ) return false;
-        if (reimb.getReimbursementType() == null ) return false;
-        return true;
+        return validationProblem(reimb) == null;
+    }
+
+    /**
+     * Works out what is wrong with a reimbursement, including values the columns they are stored in can not hold
+     * @param reimb reimb. to be validated
+     * @return returns why the reimbursement is not valid, or null if it is
+     */
+    private static String validationProblem(Reimbursement reimb) {
+        if (reimb == null) return "Missing reimbursement";
+        if (reimb.getAmount() == null || !(reimb.getAmount() > 0)) return "Invalid amount";
+        if (Math.round(reimb.getAmount() * 100) > MAX_AMOUNT_CENTS) return "Amount is more than 9999.99";
+        if (reimb.getDescription() == null || reimb.getDescription().trim().equals("")) return "Missing description";
+        if (reimb.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
+            return "Description is longer than " + MAX_DESCRIPTION_LENGTH + " characters";
+        }
+        if (reimb.getAuthor() == null ) return "Missing author";
+        if (reimb.getReimbursementType() == null ) return "Invalid type";
+        return null;
     }
 
 
@@ -1,9 +1,11 @@
 package com.revature.services;
 
+import com.revature.dtos.UserCacheStats;
 import com.revature.exceptions.*;
 import com.revature.models.Role;
 import com.revature.models.User;
 import com.revature.repositories.UserRepository;
+import com.revature.util.UserCache;
 
 import java.util.List;
 import java.util.Optional;
@@ -11,9 +13,12 @@ import java.util.Optional;
 /**
  * Constitutes the SERVICE LAYER for users. concerned with validating all user
  * input before being sent to the database. Uses a Singleton model
+ * Users are kept in a UserCache, written through by register, update and deleteUserById, so id lookups and
+ * availability checks are usually answered without going to the database.
  */
 public class UserService {
     private UserRepository userRepo = new UserRepository();
+    private final UserCache userCache = new UserCache();
     private static UserService userService = new UserService();
 
     /**
@@ -43,7 +48,11 @@ public class UserService {
      * @throws UserNotPresentException throws an error if no corresponding user is found
      */
     public User getAUserById(int userId) throws UserNotPresentException{
-        Optional<User> user = userRepo.getAUserByUserId(userId);
+        Optional<User> user = userCache.getById(userId);
+        if (!user.isPresent()) {
+            user = userRepo.getAUserByUserId(userId);
+            user.ifPresent(userCache::put);
+        }
         if(!user.isPresent()) {
             throw new UserNotPresentException("Sorry, but no user exists with the Id " + userId);
         }
@@ -55,13 +64,17 @@ public class UserService {
      * @param username username of the user
      * @param password password of the user
      * @return the object of the requested user
+     * @throws java.util.concurrent.RejectedExecutionException thrown if too many logins are waiting to be checked
      */
     public User authenticate(String username, String password) {
         if (username == null || username.trim().equals("") || password == null || password.trim().equals("")){
             throw new InvalidCredentialsException("username: " + username +" password: " + password + " is invalid.");
         }
-        return userRepo.getAUserByUsernameAndPassword(username,password)
-                .orElseThrow(RuntimeException::new);
+        User user = userRepo.getAUserByUsernameAndPassword(username,password)
+                .orElseThrow(() -> new InvalidCredentialsException("Invalid username or password"));
+        // the stored hash may just have been upgraded
+        userCache.put(user);
+        return user;
     }
 
     /**
@@ -72,16 +85,18 @@ public class UserService {
         if (!isUserValid(newUser)) {
             throw new InvalidCredentialsException("Invalid user field values provided during registration!");
         }
-        Optional<User> existingUser = userRepo.getAUserByUsername(newUser.getUsername());
-        if (existingUser.isPresent()) {
+        if (!isUsernameAvailable(newUser.getUsername())) {
             throw new FieldNotUniqueException("Username is already in use");
         }
-        Optional<User> existingUserEmail = userRepo.getAUserByEmail(newUser.getEmail());
-        if (existingUserEmail.isPresent()) {
+        if (!isEmailAvailable(newUser.getEmail())) {
             throw new FieldNotUniqueException("Email is already in use");
         }
         newUser.setUserRole(Role.EMPLOYEE.ordinal());
-        userRepo.addUser(newUser);
+        if (!userRepo.addUser(newUser)) {
+            // the availability checks may have been answered from the cache, the unique constraints have the last word
+            throw new FieldNotUniqueException("Username or email is already in use");
+        }
+        userCache.put(newUser);
     }
 
     /**
@@ -95,6 +110,7 @@ public class UserService {
         if (!userRepo.updateAUser(newUser)){
             throw new UpdateObjectException("There was a problem trying to update the user");
         }
+        userCache.put(newUser);
     }
 
     /**
@@ -106,7 +122,11 @@ public class UserService {
         if (id <= 0){
             throw new InvalidIdException("THE PROVIDED ID CANNOT BE LESS THAN OR EQUAL TO ZERO");
         }
-        return userRepo.deleteAUserById(id);
+        boolean deleted = userRepo.deleteAUserById(id);
+        if (deleted) {
+            userCache.invalidate(id);
+        }
+        return deleted;
     }
 
     /**
@@ -115,8 +135,19 @@ public class UserService {
      * @return true if available
      */
     public boolean isUsernameAvailable(String username) {
+        if (userCache.getByUsername(username).isPresent()) {
+            return false;
+        }
+        if (userCache.isUsernameKnownAbsent(username)) {
+            return true;
+        }
         User user = userRepo.getAUserByUsername(username).orElse(null);
-        return user == null;
+        if (user == null) {
+            userCache.markUsernameAbsent(username);
+            return true;
+        }
+        userCache.put(user);
+        return false;
     }
 
     /**
@@ -125,8 +156,27 @@ public class UserService {
      * @return true if available
      */
     public boolean isEmailAvailable(String email) {
+        if (userCache.getByEmail(email).isPresent()) {
+            return false;
+        }
+        if (userCache.isEmailKnownAbsent(email)) {
+            return true;
+        }
         User user = userRepo.getAUserByEmail(email).orElse(null);
-        return user == null;
+        if (user == null) {
+            userCache.markEmailAbsent(email);
+            return true;
+        }
+        userCache.put(user);
+        return false;
+    }
+
+    /**
+     * Gets the size and the hit, miss, eviction and invalidation counts of the user cache
+     * @return returns a snapshot of the user cache statistics
+     */
+    public UserCacheStats getCacheStats() {
+        return userCache.stats();
     }
 
     /**
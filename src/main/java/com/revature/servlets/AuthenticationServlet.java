@@ -1,12 +1,13 @@
 package com.revature.servlets;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import com.revature.dtos.Credentials;
 import com.revature.dtos.ErrorResponse;
 import com.revature.exceptions.InvalidCredentialsException;
 import com.revature.models.User;
 import com.revature.services.UserService;
+import com.revature.util.AsyncDispatcher;
+import com.revature.util.JsonCodec;
 
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -14,41 +15,52 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * The authentication servlet. Handles all log in functionality' and end point requests. Should only be sent a post
  * request to try and log in.
+ * Requests are handed to the AsyncDispatcher, so the work is done on its database threads rather than on a
+ * container thread.
  */
-@WebServlet("/authenticate")
+@WebServlet(value = "/authenticate", asyncSupported = true)
 public class AuthenticationServlet extends HttpServlet {
 
     public final UserService userService = UserService.getInstance();
 
     /**
-     * A client sends a post request with a Credentials object to try and log in
+     * A client sends a post request with a Credentials object to try and log in. Responds 503 if too many logins are
+     * already waiting for their password to be checked
      * @param req The client request. Should containt a Credentials object
      * @param resp The response to the client request
-     * @throws IOException Throws an IO Exception if there is an input/output problem
      */
     @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws  IOException {
-        ObjectMapper mapper = new ObjectMapper();
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+        AsyncDispatcher.getInstance().dispatch(req, resp, this::handlePost);
+    }
+
+    private void handlePost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         PrintWriter writer = resp.getWriter();
         resp.setContentType("application/json");
         try {
-            Credentials creds = mapper.readValue(req.getInputStream(), Credentials.class);
+            Credentials creds = JsonCodec.read(req.getInputStream(), Credentials.class);
             User authUser = userService.authenticate(creds.getUsername(), creds.getPassword());
-            writer.write(mapper.writeValueAsString(authUser));
+            writer.write(JsonCodec.write(authUser));
             req.getSession().setAttribute("this-user", authUser);
             resp.setStatus(200);
         } catch (MismatchedInputException | InvalidCredentialsException e) {
             final ErrorResponse err = new ErrorResponse(404,e.getMessage());
             resp.setStatus(404);
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
+        } catch (RejectedExecutionException e) {
+            final ErrorResponse err = new ErrorResponse(503,"Too many log in attempts right now, try again shortly");
+            resp.setStatus(503);
+            resp.setHeader("Retry-After", "1");
+            writer.write(JsonCodec.write(err));
         } catch(Exception e) {
             resp.setStatus(418);
             ErrorResponse err = new ErrorResponse(418,e.getMessage());
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         }
 
     }
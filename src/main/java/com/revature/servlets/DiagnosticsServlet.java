@@ -0,0 +1,85 @@
+package com.revature.servlets;
+
+import com.revature.dtos.ErrorResponse;
+import com.revature.models.Role;
+import com.revature.models.User;
+import com.revature.services.UserService;
+import com.revature.util.ConflictMetrics;
+import com.revature.util.ConnectionPoolMetrics;
+import com.revature.util.HibernateUtil;
+import com.revature.util.JsonCodec;
+import com.revature.util.StatementTracker;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Servlet that exposes runtime diagnostics to admins so the application can be tuned under load. Only get requests
+ * are supported, and the path selects the report:
+ * /diagnostics/pool - the database connection pool
+ * /diagnostics/cache - hits and misses of each second level and query cache region, when hibernate.statistics is on
+ * /diagnostics/users - the user cache in the UserService
+ * /diagnostics/conflicts - updates rejected per endpoint because of a concurrent change
+ * /diagnostics/queries - count and times of each HQL and native query, when hibernate.statistics is on
+ * /diagnostics/statements - count and times of each SQL statement shape, including Hibernate's own loads
+ */
+@WebServlet("/diagnostics/*")
+public class DiagnosticsServlet extends HttpServlet {
+
+    /**
+     * An admin sends a get request to read a diagnostics report
+     * @param req the client request, the path info names the report
+     * @param resp the server response
+     * @throws IOException thrown when a problem is encountered with the input/output
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        PrintWriter writer = resp.getWriter();
+        HttpSession session = req.getSession(false);
+        User rqst = (session == null) ? null : (User) req.getSession(false).getAttribute("this-user");
+        resp.setContentType("application/json");
+        if (rqst == null || rqst.getUserRole() != Role.ADMIN.ordinal()) {
+            final int code = (rqst == null)? 401 : 403;
+            ErrorResponse err = new ErrorResponse(code,"Not authorized.");
+            resp.setStatus(code);
+            writer.write(JsonCodec.write(err));
+            return;
+        }
+        String report = (req.getPathInfo() == null) ? "" : req.getPathInfo();
+        switch (report) {
+            case "/pool":
+                writer.write(JsonCodec.write(ConnectionPoolMetrics.getInstance().snapshot()));
+                resp.setStatus(200);
+                break;
+            case "/cache":
+                writer.write(JsonCodec.write(HibernateUtil.getCacheStats()));
+                resp.setStatus(200);
+                break;
+            case "/conflicts":
+                writer.write(JsonCodec.write(ConflictMetrics.getInstance().snapshot()));
+                resp.setStatus(200);
+                break;
+            case "/queries":
+                writer.write(JsonCodec.write(HibernateUtil.getQueryStats()));
+                resp.setStatus(200);
+                break;
+            case "/statements":
+                writer.write(JsonCodec.write(StatementTracker.getStatementStats()));
+                resp.setStatus(200);
+                break;
+            case "/users":
+                writer.write(JsonCodec.write(UserService.getInstance().getCacheStats()));
+                resp.setStatus(200);
+                break;
+            default:
+                ErrorResponse err = new ErrorResponse(404,"No such diagnostics report: " + report);
+                resp.setStatus(404);
+                writer.write(JsonCodec.write(err));
+        }
+    }
+}
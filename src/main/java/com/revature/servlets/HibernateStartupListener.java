@@ -0,0 +1,89 @@
+package com.revature.servlets;
+
+import com.revature.repositories.ReimbursementsRepository;
+import com.revature.repositories.UserRepository;
+import com.revature.util.AppConfig;
+import com.revature.util.AsyncDispatcher;
+import com.revature.util.HibernateUtil;
+import com.revature.util.MigrationRunner;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Builds the Hibernate session factory when the application is deployed rather than on the first request. Once it is
+ * built any pending schema migrations are applied, the schema is validated against the entities and the hot queries
+ * are run a few times so that the query plan cache, the connection pool and the JIT are all warm before real traffic
+ * arrives. Each phase is timed and logged. A session factory that can not be built, a failed migration or a schema
+ * that does not match the entities fails the deployment. Migrations, validation and warm up can be turned off with
+ * startup.migrate=false, startup.validateSchema=false and startup.warmUpIterations=0.
+ */
+@WebListener
+public class HibernateStartupListener implements ServletContextListener {
+    private static final Logger logger = LogManager.getLogger(HibernateStartupListener.class);
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        long start = System.nanoTime();
+        try {
+            HibernateUtil.getSessionFactory();
+        } catch (RuntimeException e) {
+            logger.error("Startup: {}", e.getMessage());
+            throw e;
+        }
+        long built = System.nanoTime();
+        logger.info("Startup: built session factory in {} ms", millisBetween(start, built));
+
+        long migrateStart = System.nanoTime();
+        if (AppConfig.getBoolean("startup.migrate", true)) {
+            try {
+                int applied = MigrationRunner.migrate();
+                logger.info("Startup: applied {} migrations in {} ms", applied, millisBetween(migrateStart, System.nanoTime()));
+            } catch (RuntimeException e) {
+                // serving on a half migrated schema would fail in ways much harder to trace, so fail the deployment
+                logger.error("Startup: migrations failed: {}", e.getMessage());
+                throw e;
+            }
+        }
+
+        long validateStart = System.nanoTime();
+        if (AppConfig.getBoolean("startup.validateSchema", true)) {
+            try {
+                HibernateUtil.validateSchema();
+                logger.info("Startup: validated schema in {} ms", millisBetween(validateStart, System.nanoTime()));
+            } catch (RuntimeException e) {
+                // every request touching the mismatched table or column would fail, so do not start serving them
+                logger.error("Startup: schema does not match the entity mappings: {}", e.getMessage());
+                throw e;
+            }
+        }
+
+        long warmStart = System.nanoTime();
+        int iterations = AppConfig.getInt("startup.warmUpIterations", 20);
+        try {
+            ReimbursementsRepository reimbRepo = new ReimbursementsRepository();
+            UserRepository userRepo = new UserRepository();
+            for (int i = 0; i < iterations; i++) {
+                reimbRepo.warmUp();
+                userRepo.warmUp();
+            }
+            logger.info("Startup: ran {} warm up iterations in {} ms", iterations, millisBetween(warmStart, System.nanoTime()));
+        } catch (Exception e) {
+            logger.error("Startup: warm up failed: {}", e.getMessage());
+        }
+        logger.info("Startup: finished in {} ms", millisBetween(start, System.nanoTime()));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        AsyncDispatcher.getInstance().shutdown();
+        HibernateUtil.shutdown();
+    }
+
+    private static long millisBetween(long startNanos, long endNanos) {
+        return (endNanos - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,93 @@
+package com.revature.servlets;
+
+import com.revature.util.RequestMetrics;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Times every request and records it in RequestMetrics under its route, method and status, counting it as in flight
+ * until it is answered. Requests handed to the AsyncDispatcher are timed until their async context completes, not
+ * just until the servlet returns. Requests that throw or time out are also counted as errors.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class MetricsFilter implements Filter {
+    private final RequestMetrics metrics = RequestMetrics.getInstance();
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        long start = System.nanoTime();
+        String route = metrics.routeOf(req);
+        String method = metrics.methodOf(req);
+        metrics.started(route, method);
+        boolean threw = true;
+        try {
+            chain.doFilter(request, response);
+            threw = false;
+        } finally {
+            if (threw) {
+                // the container answers 500 once the exception leaves the filter
+                metrics.error(route, method, "exception");
+                metrics.finished(route, method, 500, System.nanoTime() - start);
+            } else if (req.isAsyncStarted()) {
+                req.getAsyncContext().addListener(new Completion(route, method, start), req, resp);
+            } else {
+                metrics.finished(route, method, resp.getStatus(), System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Records an async request once it has been answered
+     */
+    private class Completion implements AsyncListener {
+        private final String route;
+        private final String method;
+        private final long start;
+
+        Completion(String route, String method, long start) {
+            this.route = route;
+            this.method = method;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            ServletRequest req = event.getSuppliedRequest();
+            // the dispatcher sets the standard error attribute when a handler throws
+            if (req != null && req.getAttribute(RequestDispatcher.ERROR_EXCEPTION) != null) {
+                metrics.error(route, method, "exception");
+            }
+            int status = ((HttpServletResponse) event.getSuppliedResponse()).getStatus();
+            metrics.finished(route, method, status, System.nanoTime() - start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            metrics.error(route, method, "timeout");
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // the request still completes afterwards, which is when it is recorded
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // nothing to do, the request is only put in async mode once
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.revature.servlets;
+
+import com.revature.dtos.ErrorResponse;
+import com.revature.models.Role;
+import com.revature.models.User;
+import com.revature.util.AppConfig;
+import com.revature.util.JsonCodec;
+import com.revature.util.PrometheusExporter;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Servlet that exposes the request latencies, errors, in flight requests and pool state in the Prometheus text format
+ * for a Prometheus server to scrape. Only admins can read them, either logged in or, for the scraper, by sending the
+ * metrics.token setting as a bearer token.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+    private static final byte[] TOKEN = AppConfig.get("metrics.token", "").getBytes(StandardCharsets.UTF_8);
+    private static final String BEARER = "Bearer ";
+
+    /**
+     * The monitoring server sends a get request to scrape the metrics
+     * @param req the client request
+     * @param resp the server response, every metric as text
+     * @throws IOException thrown when a problem is encountered with the input/output
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!hasToken(req)) {
+            HttpSession session = req.getSession(false);
+            User rqst = (session == null) ? null : (User) session.getAttribute("this-user");
+            if (rqst == null || rqst.getUserRole() != Role.ADMIN.ordinal()) {
+                final int code = (rqst == null)? 401 : 403;
+                ErrorResponse err = new ErrorResponse(code,"Not authorized.");
+                resp.setContentType("application/json");
+                resp.setStatus(code);
+                resp.getWriter().write(JsonCodec.write(err));
+                return;
+            }
+        }
+        resp.setContentType(PrometheusExporter.CONTENT_TYPE);
+        resp.setStatus(200);
+        resp.getWriter().write(PrometheusExporter.export());
+    }
+
+    /**
+     * Checks the bearer token of a request against metrics.token, taking the same time whichever byte differs
+     * @param req the client request
+     * @return returns true if a token is configured and the request sent it
+     */
+    private static boolean hasToken(HttpServletRequest req) {
+        String header = req.getHeader("Authorization");
+        if (TOKEN.length == 0 || header == null || !header.startsWith(BEARER)) {
+            return false;
+        }
+        byte[] sent = header.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(TOKEN, sent);
+    }
+}
@@ -0,0 +1,121 @@
+package com.revature.servlets;
+
+import com.revature.dtos.ErrorResponse;
+import com.revature.dtos.ReceiptInfo;
+import com.revature.models.User;
+import com.revature.services.ReimbursementService;
+import com.revature.util.ByteRange;
+import com.revature.util.JsonCodec;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Servlet that serves receipts kept on disk by the FileReceiptStore at /receipts/{sha-256 hash}. The database is never
+ * touched: the hash in the url names the file, and the file behind a hash can never change, so responses may be cached
+ * by the browser for a year. The file is handed to the container's sendfile support when it has it, so it goes from
+ * the page cache to the socket without passing through the heap. Without sendfile it is copied with
+ * FileChannel.transferTo into a channel over the response stream, which is an ordinary buffered copy through the heap,
+ * a buffer at a time.
+ * Clients reach this servlet through the redirect sent by /reimburse/{id}/receipt, which checks who may see the receipt.
+ * This servlet does not check again: any logged in user who has the hash can download the receipt, so the url is a
+ * capability. A SHA-256 hash can not be guessed, but it can be shared, and a receipt can not be taken back from someone
+ * who has seen its url. The hash must not be shown to anyone who may not see the reimbursement.
+ */
+@WebServlet("/receipts/*")
+public class ReceiptServlet extends HttpServlet {
+    private static final String CACHE_FOREVER = "private, max-age=31536000, immutable";
+    private static final int SNIFF_BYTES = 12;
+
+    /**
+     * A logged in user sends a get request to download a receipt
+     * @param req the client request, the path info is the hash of the receipt. May hold a Range or If-None-Match header
+     * @param resp the server response
+     * @throws IOException thrown when a problem is encountered with the input/output
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        HttpSession session = req.getSession(false);
+        User rqst = (session == null) ? null : (User) req.getSession(false).getAttribute("this-user");
+        if (rqst == null) {
+            final ErrorResponse err = new ErrorResponse(401,"Not authorized.");
+            resp.setStatus(401);
+            resp.setContentType("application/json");
+            resp.getWriter().write(JsonCodec.write(err));
+            return;
+        }
+        String hash = (req.getPathInfo() == null) ? "" : req.getPathInfo().substring(1);
+        Optional<Path> receipt = ReimbursementService.getInstance().locateReceipt(hash);
+        if (!receipt.isPresent()) {
+            final ErrorResponse err = new ErrorResponse(404,"No such receipt.");
+            resp.setStatus(404);
+            resp.setContentType("application/json");
+            resp.getWriter().write(JsonCodec.write(err));
+            return;
+        }
+
+        String etag = "\"" + hash + "\"";
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Cache-Control", CACHE_FOREVER);
+        resp.setHeader("Accept-Ranges", "bytes");
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || "*".equals(ifNoneMatch.trim()))) {
+            resp.setStatus(304);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(receipt.get(), StandardOpenOption.READ)) {
+            ByteRange range = ByteRange.parse(req.getHeader("Range"), channel.size());
+            if (range == null) {
+                resp.setHeader("Content-Range", "bytes */" + channel.size());
+                resp.sendError(416);
+                return;
+            }
+            if (range.isPartial()) {
+                resp.setStatus(206);
+                resp.setHeader("Content-Range", range.toContentRange());
+            } else {
+                resp.setStatus(200);
+            }
+            resp.setContentType(sniffContentType(channel));
+            resp.setContentLengthLong(range.getLength());
+
+            if (Boolean.TRUE.equals(req.getAttribute("org.apache.tomcat.sendfile.support"))) {
+                // tomcat writes the file to the socket itself once the request returns
+                req.setAttribute("org.apache.tomcat.sendfile.filename", receipt.get().toAbsolutePath().toString());
+                req.setAttribute("org.apache.tomcat.sendfile.start", range.getStart());
+                req.setAttribute("org.apache.tomcat.sendfile.end", range.getEnd() + 1);
+                return;
+            }
+            WritableByteChannel out = Channels.newChannel(resp.getOutputStream());
+            long position = range.getStart();
+            long remaining = range.getLength();
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    private static String sniffContentType(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SNIFF_BYTES);
+        int read = channel.read(header, 0);
+        return ReceiptInfo.sniffContentType(Arrays.copyOf(header.array(), Math.max(read, 0)));
+    }
+}
@@ -1,60 +1,190 @@
 package com.revature.servlets;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.revature.dtos.ApproveDeny;
+import com.revature.dtos.ApproveDenyResult;
 import com.revature.dtos.ErrorResponse;
+import com.revature.dtos.ImportReport;
 import com.revature.dtos.RbDTO;
+import com.revature.dtos.RbPage;
+import com.revature.dtos.RbReport;
+import com.revature.dtos.ReceiptInfo;
+import com.revature.exceptions.ConcurrentUpdateException;
 import com.revature.exceptions.InvalidIdException;
+import com.revature.exceptions.InvalidPageRequestException;
+import com.revature.exceptions.InvalidReportRequestException;
 import com.revature.exceptions.NoReimbursementsException;
 import com.revature.models.*;
 import com.revature.services.ReimbursementService;
+import com.revature.util.AsyncDispatcher;
+import com.revature.util.ByteRange;
+import com.revature.util.ConflictMetrics;
+import com.revature.util.JsonCodec;
+import javax.persistence.PersistenceException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Servlet that handles all reimbursement type requests. If sent a get request, the client is attempting to retrieve
  * reimbursement info. If sent a post request, the client is attempting to submit a new reimbursement. If sent a put
  * request, the client is attempting to update a reimbursement.
+ * Requests are handed to the AsyncDispatcher, so the work is done on its database threads rather than on a
+ * container thread.
  */
-@WebServlet("/reimburse")
+@WebServlet(value = {"/reimburse", "/reimburse/*"}, asyncSupported = true)
 public class ReimbursementServlet extends HttpServlet {
+    private static final int STREAM_FLUSH_EVERY = 200;
+    private static final Pattern RECEIPT_PATH = Pattern.compile("/(\\d+)/receipt");
 
     /**
      * Sent a get request to reimbursement if a client is trying to retrieve reimbursement info.
      * If the client is logged in as an employee, they are trying to get information about their reimbursements.
      * If they are logged in as a Finance manager they are trying to get information about all reimbursements.
      * Clarifying paramaters of reimbursement Id can be added by both finance managers and employees.
-     * Finance managers can add type or status parameters to sort reimbursements by type or status.
+     * Finance managers can add type or status parameters to sort reimbursements by type or status, or page through
+     * reimbursements with the after, limit and sort parameters, which can be combined with type and status, or set
+     * stream=true to stream every reimbursement.
+     * A get to /reimburse/{id}/receipt serves the receipt of a reimbursement as a binary file, and finance managers can
+     * get /reimburse/report for a summary of the reimbursements submitted between the optional from and to days.
      * @param req The client request. May hold additional parameters
      * @param resp the server response
-     * @throws IOException thrown if there is a problem with the input/output
      */
     @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws  IOException {
-        PrintWriter writer = resp.getWriter();
-        ObjectMapper mapper = new ObjectMapper();
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+        // receipts and streamed listings can take longer to send than a request is normally given
+        boolean streaming = RECEIPT_PATH.matcher(req.getPathInfo() == null ? "" : req.getPathInfo()).matches()
+                || "true".equals(req.getParameter("stream"));
+        if (streaming) {
+            AsyncDispatcher.getInstance().dispatchStreaming(req, resp, this::handleGet);
+        } else {
+            AsyncDispatcher.getInstance().dispatch(req, resp, this::handleGet);
+        }
+    }
+
+    private void handleGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         HttpSession session = req.getSession(false);
         User rqst = (session == null) ? null : (User) req.getSession(false).getAttribute("this-user");
+        Matcher receiptPath = RECEIPT_PATH.matcher(req.getPathInfo() == null ? "" : req.getPathInfo());
+        if (rqst != null && receiptPath.matches()) {
+            // binary response, so this has to happen before the writer is opened
+            getReceipt(req, resp, rqst, Integer.parseInt(receiptPath.group(1)));
+            return;
+        }
+        PrintWriter writer = resp.getWriter();
         resp.setContentType("application/json");
+        if (rqst != null && "/report".equals(req.getPathInfo())) {
+            getReport(req, resp, rqst, writer);
+            return;
+        }
+        if (rqst != null && req.getPathInfo() != null && !"/".equals(req.getPathInfo())) {
+            final ErrorResponse err = new ErrorResponse(404,"No such resource.");
+            resp.setStatus(404);
+            writer.write(JsonCodec.write(err));
+            return;
+        }
         if (rqst != null && rqst.getUserRole() == Role.FINANCE_MANAGER.ordinal()) {
-            financeManageDoGet(req, resp, mapper, writer);
+            financeManageDoGet(req, resp, writer);
             return;
         }
         if(rqst != null && rqst.getUserRole() == Role.EMPLOYEE.ordinal()) {
-            employeeDoGet(req, resp, rqst, mapper, writer);
+            employeeDoGet(req, resp, rqst, writer);
             return;
         }
         final int code = (rqst == null)? 401 : 403;
         final ErrorResponse err = new ErrorResponse(code,"Not authorized.");
         resp.setStatus(code);
-        writer.write(mapper.writeValueAsString(err));
+        writer.write(JsonCodec.write(err));
+    }
+
+    /**
+     * A helper method that serves /reimburse/report to finance managers: the count and total amount of the
+     * reimbursements submitted between the from and to days (yyyy-MM-dd, both optional and inclusive), overall and by
+     * status, type, author, resolver and month. The top parameter sets how many authors and resolvers are listed.
+     * @param req the client request, may hold from, to and top parameters
+     * @param resp the server response
+     * @param rqst the user requesting the report
+     * @param writer writes text responses
+     * @throws IOException thrown if there is a problem with the input/output
+     */
+    private void getReport(HttpServletRequest req, HttpServletResponse resp, User rqst, PrintWriter writer)
+            throws IOException {
+        if (rqst.getUserRole() != Role.FINANCE_MANAGER.ordinal()) {
+            final ErrorResponse err = new ErrorResponse(403,"Not authorized.");
+            resp.setStatus(403);
+            writer.write(JsonCodec.write(err));
+            return;
+        }
+        try {
+            String top = req.getParameter("top");
+            Integer topUsers = (top == null || "".equals(top.trim())) ? null : Integer.parseInt(top.trim());
+            RbReport report = ReimbursementService.getInstance().getReport(req.getParameter("from"),
+                    req.getParameter("to"), topUsers);
+            writer.write(JsonCodec.write(report));
+            resp.setStatus(200);
+        } catch (NumberFormatException | InvalidReportRequestException e) {
+            final ErrorResponse err = new ErrorResponse(400,e.getMessage());
+            resp.setStatus(400);
+            writer.write(JsonCodec.write(err));
+        }
+    }
+
+    /**
+     * A helper method that serves the receipt of a reimbursement at /reimburse/{id}/receipt. The receipt is copied
+     * from the database to the response a slice at a time, and a single byte range can be requested with the Range
+     * header so that clients can resume or page through large receipts. Receipts kept on disk are redirected to their
+     * content hash url under /receipts.
+     * @param req the client request, may hold a Range header
+     * @param resp the server response
+     * @param rqst the user requesting the receipt
+     * @param reimbId the id of the reimbursement
+     * @throws IOException thrown if there is a problem with the input/output
+     */
+    private void getReceipt(HttpServletRequest req, HttpServletResponse resp, User rqst, int reimbId) throws IOException {
+        ReceiptInfo info;
+        try {
+            info = ReimbursementService.getInstance().getReceiptInfo(rqst, reimbId);
+        } catch (InvalidIdException | NoReimbursementsException e) {
+            final ErrorResponse err = new ErrorResponse(404,e.getMessage());
+            resp.setStatus(404);
+            resp.setContentType("application/json");
+            resp.getWriter().write(JsonCodec.write(err));
+            return;
+        }
+        if (info.getHash() != null) {
+            // kept on disk, served by the ReceiptServlet without going back to the database
+            resp.sendRedirect(req.getContextPath() + "/receipts/" + info.getHash());
+            return;
+        }
+        resp.setHeader("Accept-Ranges", "bytes");
+        ByteRange range = ByteRange.parse(req.getHeader("Range"), info.getLength());
+        if (range == null) {
+            resp.setHeader("Content-Range", "bytes */" + info.getLength());
+            resp.sendError(416);
+            return;
+        }
+        if (range.isPartial()) {
+            resp.setStatus(206);
+            resp.setHeader("Content-Range", range.toContentRange());
+        } else {
+            resp.setStatus(200);
+        }
+        resp.setContentType(info.getContentType());
+        resp.setContentLengthLong(range.getLength());
+        ReimbursementService.getInstance().writeReceipt(reimbId, range.getStart(), range.getLength(), resp.getOutputStream());
     }
 
     /**
@@ -64,23 +194,22 @@ public class ReimbursementServlet extends HttpServlet {
      * @param req the servlet request
      * @param resp the servlet response
      * @param rsqt the user who is requesting information
-     * @param mapper the object mapper
      * @param writer the writer who writes information
      * @throws IOException thrown if there is a problem with the input/output
      */
-    private void employeeDoGet(HttpServletRequest req, HttpServletResponse resp, User rsqt, ObjectMapper mapper, PrintWriter writer) throws IOException {
+    private void employeeDoGet(HttpServletRequest req, HttpServletResponse resp, User rsqt, PrintWriter writer) throws IOException {
         String id = req.getParameter("id");
         try {
             if(id == null) {
                 List<RbDTO> reimbursements = ReimbursementService.getInstance().getReimbByUserId(rsqt.getUserId());
-                String usersJSON = mapper.writeValueAsString(reimbursements);
+                String usersJSON = JsonCodec.writeRbDTOs(reimbursements);
                 writer.write(usersJSON);
         } else {
             int reimbursementId;
                 reimbursementId = Integer.parseInt(id);
                 RbDTO reimb;
                 reimb = ReimbursementService.getInstance().getReimbByUserAndReimbId(rsqt.getUserId(), reimbursementId);
-                String usersJSON = mapper.writeValueAsString(reimb);
+                String usersJSON = JsonCodec.write(reimb);
                 writer.write(usersJSON);
                 resp.setStatus(200);
             }
@@ -88,7 +217,7 @@ public class ReimbursementServlet extends HttpServlet {
         }catch(InvalidIdException | NoReimbursementsException  ie) {
             final ErrorResponse err = new ErrorResponse(404,ie.getMessage());
             resp.setStatus(404);
-            resp.getWriter().write(mapper.writeValueAsString(err));
+            resp.getWriter().write(JsonCodec.write(err));
 
         }
     }
@@ -98,66 +227,87 @@ public class ReimbursementServlet extends HttpServlet {
      * that they have. If a financial manager sends it, they are attempting to update a specific reimbursement.
      * @param req The client request
      * @param resp the servlet response
-     * @throws IOException thrown if there is a problem with the input/output
      */
     @Override
-    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws  IOException {
-        ObjectMapper mapper = new ObjectMapper();
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) {
+        AsyncDispatcher.getInstance().dispatch(req, resp, this::handlePut);
+    }
+
+    private void handlePut(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         PrintWriter writer = resp.getWriter();
         HttpSession session = req.getSession(false);
         User rqst = (session == null) ? null : (User) req.getSession(false).getAttribute("this-user");
         resp.setContentType("application/json");
         if (rqst != null && rqst.getUserRole() == Role.FINANCE_MANAGER.ordinal()) {
-            managerPut(req,resp,rqst,mapper);
+            managerPut(req,resp,rqst);
             return;
         }
         if(rqst != null && rqst.getUserRole() == Role.EMPLOYEE.ordinal()) {
-           employeePut(req,resp,mapper, rqst);
+           employeePut(req,resp, rqst);
            return;
         }
         final int code = (rqst == null)? 401 : 403;
         final ErrorResponse err = new ErrorResponse(code,"Not authorized to put.");
         resp.setStatus(code);
-        writer.write(mapper.writeValueAsString(err));
+        writer.write(JsonCodec.write(err));
 
     }
 
     /**
      * Sending a post request means attempting to add a new reimbursement. The only people who would do so are
-     * employees.
+     * employees. A post to /reimburse/import adds many reimbursements at once, sent as JSON lines or as CSV.
      * @param req The client request
      * @param resp the server response
-     * @throws IOException thrown if there is a problem with the input/output
      */
     @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws  IOException {
-        ObjectMapper mapper = new ObjectMapper();
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+        if ("/import".equals(req.getPathInfo())) {
+            AsyncDispatcher.getInstance().dispatchStreaming(req, resp, this::handlePost);
+        } else {
+            AsyncDispatcher.getInstance().dispatch(req, resp, this::handlePost);
+        }
+    }
+
+    private void handlePost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         PrintWriter writer = resp.getWriter();
         HttpSession session = req.getSession(false);
         User rqst = (session == null) ? null : (User) req.getSession(false).getAttribute("this-user");
         resp.setContentType("application/json");
         if(rqst != null && rqst.getUserRole() == Role.EMPLOYEE.ordinal()) {
-            employeePost(req,resp,rqst,mapper);
+            if ("/import".equals(req.getPathInfo())) {
+                employeeImport(req, resp, rqst);
+                return;
+            }
+            employeePost(req,resp,rqst);
             return;
         }
         final int code = (rqst == null)? 401 : 403;
         final ErrorResponse err = new ErrorResponse(code,"Not authorized to post.");
         resp.setStatus(code);
-        writer.write(mapper.writeValueAsString(err));
+        writer.write(JsonCodec.write(err));
     }
 
     /**
      * A helper method that handles the manager put. A manager uses put to approve or deny a specific reimbursement
-     * request. This should be done by sending an ApproveDeny object
+     * request. This should be done by sending an ApproveDeny object, or an array of ApproveDeny objects to resolve many
+     * reimbursements in one transaction, in which case the response is an array with the result of each. Responds 409
+     * if the reimbursement has already been resolved, or if one in an array was changed while it was being resolved
      * @param req The client request
      * @param resp the client response
      * @param rqst The user making the request
-     * @param mapper the Object mapper
      * @throws IOException thrown if there is a problem with the input/output
      */
-    private void managerPut(HttpServletRequest req, HttpServletResponse resp, User rqst,ObjectMapper mapper) throws IOException {
+    private void managerPut(HttpServletRequest req, HttpServletResponse resp, User rqst) throws IOException {
         try {
-            ApproveDeny approvedeny = mapper.readValue(req.getInputStream(), ApproveDeny.class);
+            InputStream body = new BufferedInputStream(req.getInputStream());
+            if (isJsonArray(body)) {
+                List<ApproveDenyResult> results = ReimbursementService.getInstance()
+                        .resolveAll(rqst, JsonCodec.readApproveDenies(body));
+                resp.setStatus(200);
+                resp.getWriter().write(JsonCodec.writeApproveDenyResults(results));
+                return;
+            }
+            ApproveDeny approvedeny = JsonCodec.read(body, ApproveDeny.class);
             if (approvedeny.getStatus() == ReimbursementStatus.APPROVED.ordinal()) {
                 ReimbursementService.getInstance().approve(rqst, approvedeny.getId());
                 resp.setStatus(200);
@@ -165,32 +315,61 @@ public class ReimbursementServlet extends HttpServlet {
             }
             ReimbursementService.getInstance().deny(rqst,approvedeny.getId());
             resp.setStatus(200);
+        } catch (ConcurrentUpdateException e) {
+            ConflictMetrics.getInstance().record("PUT /reimburse");
+            final ErrorResponse err = new ErrorResponse(409,e.getMessage());
+            resp.setStatus(409);
+            resp.getWriter().write(JsonCodec.write(err));
+        } catch (PersistenceException e) {
+            // the database failing is not the client's fault, the container answers 500
+            throw e;
         } catch (Exception e) {
             final ErrorResponse err = new ErrorResponse(406,e.getMessage());
             resp.setStatus(406);
-            resp.getWriter().write(mapper.writeValueAsString(err));
+            resp.getWriter().write(JsonCodec.write(err));
         }
     }
 
 
+    /**
+     * Peeks at the first non whitespace byte of a request body without consuming it
+     * @param body the request body, must support mark and reset
+     * @return returns true if the body is a JSON array
+     * @throws IOException thrown if there is a problem with the input/output
+     */
+    private static boolean isJsonArray(InputStream body) throws IOException {
+        int c;
+        do {
+            body.mark(1);
+            c = body.read();
+        } while (c == ' ' || c == '\t' || c == '\r' || c == '\n');
+        body.reset();
+        return c == '[';
+    }
+
     /**
      * A helper method that handles an employee put. An employee sends a put to update a reimbursement request. This
-     * should be done by sending an RbDTO.
+     * should be done by sending an RbDTO. Responds 409 if the RbDTO has a version and the reimbursement has changed
+     * since that version
      * @param req The client request
      * @param resp the server response
-     * @param mapper the object mapper, should contain an RbDTO
      * @param rqst The user making the request
      * @throws IOException thrown if there is a problem with the input/output
      */
-private void employeePut(HttpServletRequest req, HttpServletResponse resp, ObjectMapper mapper, User rqst) throws IOException {
+private void employeePut(HttpServletRequest req, HttpServletResponse resp, User rqst) throws IOException {
         try {
-            RbDTO reimbursement = mapper.readValue(req.getInputStream(), RbDTO.class);
+            RbDTO reimbursement = JsonCodec.read(req.getInputStream(), RbDTO.class);
             ReimbursementService.getInstance().updateReimbursemntByRbDTO(reimbursement, rqst);
             resp.setStatus(200);
+        } catch (ConcurrentUpdateException e) {
+            ConflictMetrics.getInstance().record("PUT /reimburse");
+            final ErrorResponse err = new ErrorResponse(409,e.getMessage());
+            resp.setStatus(409);
+            resp.getWriter().write(JsonCodec.write(err));
         }catch(Exception e) {
             final ErrorResponse err = new ErrorResponse(404,e.getMessage());
             resp.setStatus(404);
-            resp.getWriter().write(mapper.writeValueAsString(err));
+            resp.getWriter().write(JsonCodec.write(err));
         }
     }
 
@@ -200,62 +379,83 @@ private void employeePut(HttpServletRequest req, HttpServletResponse resp, Objec
      * reimbursement request. Should be done by sending an RbDTO
      * @param req The client request
      * @param resp the server response
-     * @param mapper The user making the request
-     * @param rqst the object mapper, should contain an RbDTO
+     * @param rqst The user making the request
      * @throws IOException thrown if there is a problem with the input/output
      */
-    private void employeePost(HttpServletRequest req,HttpServletResponse resp,User rqst, ObjectMapper mapper) throws IOException{
+    private void employeePost(HttpServletRequest req,HttpServletResponse resp,User rqst) throws IOException{
         try {
-            RbDTO reimbursement = mapper.readValue(req.getInputStream(), RbDTO.class);
+            RbDTO reimbursement = JsonCodec.read(req.getInputStream(), RbDTO.class);
             ReimbursementService.getInstance().saveRbDTO(rqst,reimbursement);
             resp.setStatus(200);
         }catch(Exception e) {
             final ErrorResponse err = new ErrorResponse(404,e.getMessage());
             resp.setStatus(404);
-            resp.getWriter().write(mapper.writeValueAsString(err));
+            resp.getWriter().write(JsonCodec.write(err));
         }
 
     }
 
+    /**
+     * A helper method that handles an employee import. The body is read a row at a time, as CSV with a header row
+     * naming the RbDTO fields if the content type is text/csv, or as one RbDTO object per line otherwise. Responds
+     * with an ImportReport.
+     * @param req The client request
+     * @param resp the server response
+     * @param rqst The user making the request, the author of every imported reimbursement
+     * @throws IOException thrown if there is a problem with the input/output
+     */
+    private void employeeImport(HttpServletRequest req, HttpServletResponse resp, User rqst) throws IOException {
+        String contentType = req.getContentType();
+        boolean csv = contentType != null && contentType.toLowerCase().startsWith("text/csv");
+        try (MappingIterator<RbDTO> rows = csv ? JsonCodec.readRbDTOCsv(req.getInputStream())
+                : JsonCodec.readRbDTOLines(req.getInputStream())) {
+            ImportReport report = ReimbursementService.getInstance().importReimbursements(rqst, rows);
+            resp.setStatus(200);
+            resp.getWriter().write(JsonCodec.write(report));
+        } catch (Exception e) {
+            final ErrorResponse err = new ErrorResponse(400,e.getMessage());
+            resp.setStatus(400);
+            resp.getWriter().write(JsonCodec.write(err));
+        }
+    }
+
     /**
      * A helper method that handles a get method that sorts by type
      * @param resp The servlet response
-     * @param mapper the object mapper
      * @param writer writes text responses
      * @param type the type of reimbursement to be searched for
      * @throws IOException thrown if there is a problem with the input/output
      */
-    private void getReimbursementByTpe(HttpServletResponse resp, ObjectMapper mapper, PrintWriter writer, String type) throws IOException{
+    private void getReimbursementByTpe(HttpServletResponse resp, PrintWriter writer, String type) throws IOException{
         List<RbDTO> reimbursements = ReimbursementService.getInstance().getReimbByType(ReimbursementType.valueOf(type).ordinal());
         try {
-            String usersJson = mapper.writeValueAsString(reimbursements);
+            String usersJson = JsonCodec.writeRbDTOs(reimbursements);
             writer.write(usersJson);
             resp.setStatus(200);
         } catch (Exception e) {
             final ErrorResponse err = new ErrorResponse(404,e.getMessage());
             resp.setStatus(404);
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         }
     }
 
     /**
      * A helper method that handles searching for reimbursement by status
      * @param resp The server response
-     * @param mapper the object mapper
      * @param writer writes text responses
      * @param status the status to be searched for
      * @throws IOException thrown if there is a problem with the input/output
      */
-    private void getReimbursementByStatus(HttpServletResponse resp, ObjectMapper mapper, PrintWriter writer, String status) throws IOException {
+    private void getReimbursementByStatus(HttpServletResponse resp, PrintWriter writer, String status) throws IOException {
         List<RbDTO> reimbursements = ReimbursementService.getInstance().getReimbByStatus(ReimbursementStatus.valueOf(status).ordinal());
         try {
-            String usersJson = mapper.writeValueAsString(reimbursements);
+            String usersJson = JsonCodec.writeRbDTOs(reimbursements);
             writer.write(usersJson);
             resp.setStatus(200);
         } catch (Exception e) {
             final ErrorResponse err = new ErrorResponse(404,e.getMessage());
             resp.setStatus(404);
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         }
     }
 
@@ -263,41 +463,115 @@ private void employeePut(HttpServletRequest req, HttpServletResponse resp, Objec
     /**
      * A helper method that handles grabbing all reimbursements.
      * @param resp the server responce
-     * @param mapper the object mapper
      * @param writer writes text responses
      * @throws IOException thrown if there is a problem with the input/output
      */
-    private void getAllReimbursements(HttpServletResponse resp, ObjectMapper mapper, PrintWriter writer)throws IOException  {
+    private void getAllReimbursements(HttpServletResponse resp, PrintWriter writer)throws IOException  {
         List<RbDTO> reimbursements = ReimbursementService.getInstance().getAllReimb();
         try {
-            String usersJSON = mapper.writeValueAsString(reimbursements);
+            String usersJSON = JsonCodec.writeRbDTOs(reimbursements);
             writer.write(usersJSON);
             resp.setStatus(200);
         } catch (Exception e) {
             final ErrorResponse err = new ErrorResponse(404,e.getMessage());
             resp.setStatus(404);
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
+        }
+    }
+
+    /**
+     * A helper method that handles grabbing a single page of reimbursements. Pages are ordered by submitted time and
+     * the response holds a nextCursor to send back, with the same status and type, as the after parameter to get the
+     * following page.
+     * @param resp the server response
+     * @param writer writes text responses
+     * @param status the status to filter by, may be null
+     * @param type the type to filter by, may be null
+     * @param after the cursor of the previous page, may be null
+     * @param limit the page size, may be null
+     * @param sort the sort order, may be null
+     * @throws IOException thrown if there is a problem with the input/output
+     */
+    private void getReimbursementPage(HttpServletResponse resp, PrintWriter writer, String status, String type,
+                                      String after, String limit, String sort) throws IOException {
+        Integer statusId = null;
+        Integer typeId = null;
+        Integer pageSize = null;
+        try {
+            if (status != null && !"".equals(status.trim())) {
+                statusId = ReimbursementStatus.valueOf(status).ordinal();
+            }
+            if (type != null && !"".equals(type.trim())) {
+                typeId = ReimbursementType.valueOf(type).ordinal();
+            }
+            if (limit != null && !"".equals(limit.trim())) {
+                pageSize = Integer.parseInt(limit);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Invalid status, type or limit: " + e.getMessage());
+        }
+        RbPage page = ReimbursementService.getInstance().getReimbPage(statusId, typeId, after, pageSize, sort);
+        writer.write(JsonCodec.write(page));
+        resp.setStatus(200);
+    }
+
+    /**
+     * A helper method that streams every reimbursement (optionally filtered by status and type) as a JSON array. Rows
+     * are written as they are read from the database and flushed every STREAM_FLUSH_EVERY rows, so memory use does not
+     * depend on the number of rows and the client starts receiving data straight away. If the stream fails part way
+     * the array is left unclosed, so the client can not mistake what it got for the whole list.
+     * @param resp the server response
+     * @param writer writes text responses
+     * @param status the status to filter by, may be null
+     * @param type the type to filter by, may be null
+     * @throws IOException thrown if there is a problem with the input/output
+     */
+    private void streamReimbursements(HttpServletResponse resp, PrintWriter writer, String status, String type)
+            throws IOException {
+        Integer statusId = (status == null || "".equals(status.trim())) ? null : ReimbursementStatus.valueOf(status).ordinal();
+        Integer typeId = (type == null || "".equals(type.trim())) ? null : ReimbursementType.valueOf(type).ordinal();
+        ObjectWriter rowWriter = JsonCodec.rbDTOStreamWriter();
+        resp.setStatus(200);
+        try (JsonGenerator generator = JsonCodec.createGenerator(writer)) {
+            // closing the generator after a failure must not write the closing bracket
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.writeStartArray();
+            int[] count = {0};
+            ReimbursementService.getInstance().streamReimb(statusId, typeId, reimbursement -> {
+                try {
+                    rowWriter.writeValue(generator, reimbursement);
+                    if (++count[0] % STREAM_FLUSH_EVERY == 0) {
+                        generator.flush();
+                        resp.flushBuffer();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            // the status line is already sent, so all we can do is stop writing
+            throw e.getCause();
         }
     }
 
     /**
      * A helper method that grabs a specific reimbursement by its id
      * @param resp the server response
-     * @param mapper the object mapper
      * @param writer the object writer
      * @param id the id of the reimbursement
      * @throws IOException thrown if there is a problem with the input/output
      */
-    private void getSpecificReimbursement(HttpServletResponse resp, ObjectMapper mapper, PrintWriter writer, Integer id) throws IOException{
+    private void getSpecificReimbursement(HttpServletResponse resp, PrintWriter writer, Integer id) throws IOException{
         RbDTO reimbursements = ReimbursementService.getInstance().getReimbByReimbId(id);
         try {
-            String usersJSON = mapper.writeValueAsString(reimbursements);
+            String usersJSON = JsonCodec.write(reimbursements);
             writer.write(usersJSON);
             resp.setStatus(200);
         } catch (Exception e) {
             final ErrorResponse err = new ErrorResponse(404,e.getMessage());
             resp.setStatus(404);
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         }
     }
 
@@ -306,26 +580,36 @@ private void employeePut(HttpServletRequest req, HttpServletResponse resp, Objec
      * a specific reimbursement, or a reimbursement by status or type.
      * @param req the server request
      * @param resp the server resposne
-     * @param mapper the object mapper
      * @param writer writes text responses
      * @throws IOException thrown if there is a problem with the input/output
      */
-    private void financeManageDoGet(HttpServletRequest req, HttpServletResponse resp, ObjectMapper mapper, PrintWriter writer) throws IOException{
+    private void financeManageDoGet(HttpServletRequest req, HttpServletResponse resp, PrintWriter writer) throws IOException{
         String id = req.getParameter("id");
         String type = req.getParameter("type");
         String status = req.getParameter("status");
+        String after = req.getParameter("after");
+        String limit = req.getParameter("limit");
+        String sort = req.getParameter("sort");
         try {
+            if (after != null || limit != null || sort != null) {
+                getReimbursementPage(resp, writer, status, type, after, limit, sort);
+                return;
+            }
+            if ("true".equals(req.getParameter("stream"))) {
+                streamReimbursements(resp, writer, status, type);
+                return;
+            }
             if (type != null && !"".equals(type.trim())) {
-                getReimbursementByTpe(resp, mapper, writer, type);
+                getReimbursementByTpe(resp, writer, type);
                 return;
             }
             if (status != null && !"".equals(status.trim())) {
-                getReimbursementByStatus(resp, mapper, writer, status);
+                getReimbursementByStatus(resp, writer, status);
                 resp.setStatus(200);
                 return;
             }
             if (id == null) {
-                getAllReimbursements(resp, mapper, writer);
+                getAllReimbursements(resp, writer);
             } else {
                 int reimbursementId;
                 try {
@@ -333,19 +617,30 @@ private void employeePut(HttpServletRequest req, HttpServletResponse resp, Objec
                 } catch (NumberFormatException n) {
                     final ErrorResponse err = new ErrorResponse(401,n.getMessage());
                     resp.setStatus(401);
-                    resp.getWriter().write(mapper.writeValueAsString(err));
+                    resp.getWriter().write(JsonCodec.write(err));
                     return;
                 }
-                getSpecificReimbursement(resp, mapper, writer, reimbursementId);
+                getSpecificReimbursement(resp, writer, reimbursementId);
             }
+        }catch(InvalidPageRequestException pe) {
+            final ErrorResponse err = new ErrorResponse(400,pe.getMessage());
+            resp.setStatus(400);
+            resp.getWriter().write(JsonCodec.write(err));
         }catch(InvalidIdException | NoReimbursementsException re) {
             final ErrorResponse err = new ErrorResponse(406,re.getMessage());
+            resp.resetBuffer();
             resp.setStatus(406);
-            resp.getWriter().write(mapper.writeValueAsString(err));
+            resp.getWriter().write(JsonCodec.write(err));
         } catch(Exception e) {
+            if (resp.isCommitted()) {
+                // part of a streamed list has already been sent, an error body would only be appended to it. Let the
+                // dispatcher log it and end the response, the unclosed array tells the client it is incomplete
+                throw e;
+            }
+            resp.resetBuffer();
             resp.setStatus(418);
             ErrorResponse err = new ErrorResponse(418,e.getMessage());
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         }
     }
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package com.revature.servlets;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.revature.dtos.ErrorResponse;
 import com.revature.exceptions.*;
 import com.revature.models.Role;
 import com.revature.models.User;
 import com.revature.services.UserService;
+import com.revature.util.AsyncDispatcher;
+import com.revature.util.ConflictMetrics;
+import com.revature.util.JsonCodec;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -19,8 +21,10 @@ import java.io.PrintWriter;
 /**
  * Servlet that handles users requests. The only people accessing the user tables will be admins. post request means
  * creating a new user, a put request means updating a user, a delete request means deleting a user.
+ * Requests are handed to the AsyncDispatcher, so the work is done on its database threads rather than on a
+ * container thread.
  */
-@WebServlet("/users/*")
+@WebServlet(value = "/users/*", asyncSupported = true)
 public class UsersServlet extends HttpServlet {
 
     private final UserService userService = UserService.getInstance();
@@ -29,12 +33,14 @@ public class UsersServlet extends HttpServlet {
      * Admin can create a new User account. It will be initiated as an Employee.
      * @param req the client request
      * @param resp the server response
-     * @throws IOException thrown when a problem is encountered with the input/output
      */
     @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws  IOException {
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+        AsyncDispatcher.getInstance().dispatch(req, resp, this::handlePost);
+    }
+
+    private void handlePost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         PrintWriter writer = resp.getWriter();
-        ObjectMapper mapper = new ObjectMapper();
         HttpSession session = req.getSession(false);
         User rqst = (session == null) ? null : (User) req.getSession(false).getAttribute("this-user");
         resp.setContentType("application/json");
@@ -43,34 +49,37 @@ public class UsersServlet extends HttpServlet {
                 final int code = (rqst == null)? 401 : 403;
                 ErrorResponse err = new ErrorResponse(code,"Not authorized to post.");
                 resp.setStatus(code);
-                writer.write(mapper.writeValueAsString(err));
+                writer.write(JsonCodec.write(err));
                 return;
             }
-            User newUser = mapper.readValue(req.getInputStream(),User.class);
+            User newUser = JsonCodec.read(req.getInputStream(), User.class);
             userService.register(newUser);
             resp.setStatus(200);
         } catch (FieldNotUniqueException | InvalidCredentialsException fnu){
             ErrorResponse err = new ErrorResponse(409,fnu.getMessage());
             resp.setStatus(409);
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         } catch(Exception e) {
             ErrorResponse err = new ErrorResponse(418,e.getMessage());
             resp.setStatus(418);
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         }
 
     }
 
     /**
-     * Admin can update an account
+     * Admin can update an account. The user must be sent with the version it was read at, responds 409 if the account
+     * has changed since
      * @param req the client request
      * @param resp the server response
-     * @throws IOException thrown when a problem is encountered with the input/output
      */
     @Override
-    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws  IOException {
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) {
+        AsyncDispatcher.getInstance().dispatch(req, resp, this::handlePut);
+    }
+
+    private void handlePut(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         PrintWriter writer = resp.getWriter();
-        ObjectMapper mapper = new ObjectMapper();
         HttpSession session = req.getSession(false);
         User rqst = (session == null) ? null : (User) req.getSession(false).getAttribute("this-user");
         resp.setContentType("application/json");
@@ -79,20 +88,25 @@ public class UsersServlet extends HttpServlet {
                 final int code = (rqst == null)? 401 : 403;
                 ErrorResponse err = new ErrorResponse(code,"Not authorized to post.");
                 resp.setStatus(code);
-                writer.write(mapper.writeValueAsString(err));
+                writer.write(JsonCodec.write(err));
                 return;
             }
-            User updateUser = mapper.readValue(req.getInputStream(),User.class);
+            User updateUser = JsonCodec.read(req.getInputStream(), User.class);
             userService.update(updateUser);
             resp.setStatus(200);
+        } catch (ConcurrentUpdateException cue){
+            ConflictMetrics.getInstance().record("PUT /users");
+            resp.setStatus(409);
+            ErrorResponse err = new ErrorResponse(409,cue.getMessage());
+            writer.write(JsonCodec.write(err));
         } catch (InvalidUserFieldsException | UpdateObjectException iufe){
             resp.setStatus(409);
             ErrorResponse err = new ErrorResponse(409,iufe.getMessage());
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         } catch(Exception e) {
             ErrorResponse err = new ErrorResponse(418,e.getMessage());
             resp.setStatus(418);
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         }
     }
 
@@ -100,12 +114,14 @@ public class UsersServlet extends HttpServlet {
      * Admin can delete an account
      * @param req the client request
      * @param resp the server response
-     * @throws IOException thrown when a problem is encountered with the input/output
      */
     @Override
-    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) {
+        AsyncDispatcher.getInstance().dispatch(req, resp, this::handleDelete);
+    }
+
+    private void handleDelete(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         PrintWriter writer = resp.getWriter();
-        ObjectMapper mapper = new ObjectMapper();
         HttpSession session = req.getSession(false);
         User rqst = (session == null) ? null : (User) req.getSession(false).getAttribute("this-user");
         resp.setContentType("application/json");
@@ -114,25 +130,25 @@ public class UsersServlet extends HttpServlet {
                 final int code = (rqst == null)? 401 : 403;
                 ErrorResponse err = new ErrorResponse(code,"Not authorized to post.");
                 resp.setStatus(code);
-                writer.write(mapper.writeValueAsString(err));
+                writer.write(JsonCodec.write(err));
                 return;
             }
-            User toDelete = mapper.readValue(req.getInputStream(),User.class);
+            User toDelete = JsonCodec.read(req.getInputStream(), User.class);
             if (userService.deleteUserById(toDelete.getUserId())) {
                 resp.setStatus(200);
             } else {
                 ErrorResponse err = new ErrorResponse(404,"Not able to delete user");
                 resp.setStatus(404);
-                writer.write(mapper.writeValueAsString(err));
+                writer.write(JsonCodec.write(err));
             }
         } catch (InvalidIdException ie){
             resp.setStatus(409);
             ErrorResponse err = new ErrorResponse(409,ie.getMessage());
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         } catch(Exception e) {
             resp.setStatus(418);
             ErrorResponse err = new ErrorResponse(418,e.getMessage());
-            writer.write(mapper.writeValueAsString(err));
+            writer.write(JsonCodec.write(err));
         }
     }
 }
@@ -0,0 +1,86 @@
+package com.revature.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Reads application settings. A setting passed as a system property (-Dkey=value) wins over the same key in
+ * properties.properties on the classpath, and the default is used if neither has it.
+ */
+public class AppConfig {
+    private static final Properties props = new Properties();
+
+    static {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream input = loader.getResourceAsStream("properties.properties")) {
+            if (input != null) {
+                props.load(input);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private AppConfig() {
+        super();
+    }
+
+    /**
+     * Gets a setting as a string
+     * @param key the name of the setting
+     * @param defaultValue the value to use if the setting is not present
+     * @return returns the value of the setting
+     */
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = props.getProperty(key);
+        }
+        return (value == null || value.trim().equals("")) ? defaultValue : value.trim();
+    }
+
+    /**
+     * Gets a setting as a string
+     * @param key the name of the setting
+     * @return returns the value of the setting, or null if it is not present
+     */
+    public static String get(String key) {
+        return get(key, null);
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Gets every setting whose name starts with the prefix, with the prefix removed from the names
+     * @param prefix the prefix to search for, such as pool.dataSource.
+     * @return returns the matching settings
+     */
+    public static Properties getWithPrefix(String prefix) {
+        Properties matching = new Properties();
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                matching.setProperty(key.substring(prefix.length()), props.getProperty(key));
+            }
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                matching.setProperty(key.substring(prefix.length()), System.getProperty(key));
+            }
+        }
+        return matching;
+    }
+}
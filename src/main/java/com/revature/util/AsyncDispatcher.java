@@ -0,0 +1,276 @@
+package com.revature.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs servlet requests asynchronously on a bounded pool of database threads, so a container thread is only held
+ * while a request is read in, not for its Hibernate round trips. The pool has async.threads threads, as many as the
+ * connection pool has connections by default, and queues up to async.queueSize requests; beyond that requests are
+ * answered with 503. A request that takes longer than async.timeoutMillis, or whose client goes away, is answered
+ * (if it still can be), and the queries it is running are cancelled in the database. Handlers write to a
+ * GuardedResponse, so a handler still running after its request was answered can no longer touch the response.
+ * Requests that stream a large body in or out are dispatched with dispatchStreaming, which uses
+ * async.streamTimeoutMillis instead; by default they have no time limit and a stalled client is cut off by the
+ * connector's own read and write timeouts.
+ * With async.virtualThreads (Java 21 or later) each request gets its own virtual thread instead, and at most
+ * async.threads + async.queueSize requests are in flight at once; the connection pool then does the queueing.
+ * Uses the Singleton model since there is one pool per application.
+ */
+public class AsyncDispatcher {
+    private static final Logger logger = LogManager.getLogger(AsyncDispatcher.class);
+    private static final AsyncDispatcher dispatcher = new AsyncDispatcher();
+    // the request being handled on each database thread, so the sessions it opens can be cancelled
+    private static final ThreadLocal<Task> current = new ThreadLocal<>();
+
+    private final ExecutorService executor;
+    // bounds the requests in flight on virtual threads, which have no queue to fill up. Null on the platform pool
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final AtomicInteger active = new AtomicInteger();
+    private final long timeoutMillis = AppConfig.getInt("async.timeoutMillis", 30_000);
+    private final long streamTimeoutMillis = AppConfig.getInt("async.streamTimeoutMillis", 0);
+
+    /**
+     * The work of a servlet method, run on a database thread
+     */
+    public interface Handler {
+        void handle(HttpServletRequest req, HttpServletResponse resp) throws IOException;
+    }
+
+    private AsyncDispatcher() {
+        int threads = AppConfig.getInt("async.threads", AppConfig.getInt("pool.maximumPoolSize", 10));
+        int queueSize = AppConfig.getInt("async.queueSize", 5_000);
+        maxInFlight = threads + queueSize;
+        ExecutorService virtual = AppConfig.getBoolean("async.virtualThreads", false) ? newVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            executor = virtual;
+            permits = new Semaphore(maxInFlight);
+        } else {
+            AtomicInteger count = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), runnable -> {
+                        Thread thread = new Thread(runnable, "db-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+            permits = null;
+        }
+    }
+
+    public static AsyncDispatcher getInstance() {
+        return dispatcher;
+    }
+
+    /**
+     * Puts the request in async mode and queues the handler to run on a database thread. The request is completed
+     * when the handler returns
+     * @param req the client request, its servlet must support async
+     * @param resp the server response
+     * @param handler the work to do for the request
+     */
+    public void dispatch(HttpServletRequest req, HttpServletResponse resp, Handler handler) {
+        dispatch(req, resp, handler, timeoutMillis);
+    }
+
+    /**
+     * Like dispatch, for a request that reads or writes a body too large to be done within async.timeoutMillis,
+     * such as a download or an import. It is given async.streamTimeoutMillis instead
+     * @param req the client request, its servlet must support async
+     * @param resp the server response
+     * @param handler the work to do for the request
+     */
+    public void dispatchStreaming(HttpServletRequest req, HttpServletResponse resp, Handler handler) {
+        dispatch(req, resp, handler, streamTimeoutMillis);
+    }
+
+    private void dispatch(HttpServletRequest req, HttpServletResponse resp, Handler handler, long timeout) {
+        AsyncContext context = req.startAsync(req, resp);
+        context.setTimeout(timeout);
+        Task task = new Task(req, new GuardedResponse(context, resp), handler);
+        context.addListener(task);
+        if (permits != null && !permits.tryAcquire()) {
+            task.resp.finish(503, "The server is too busy right now, try again shortly");
+            return;
+        }
+        // the permit is given back when the handler returns, not when the request is answered, so requests that
+        // timed out but are still running count towards the limit
+        Runnable work = (permits == null) ? task : () -> {
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        };
+        try {
+            executor.execute(work);
+        } catch (RejectedExecutionException e) {
+            if (permits != null) {
+                permits.release();
+            }
+            task.resp.finish(503, "The server is too busy right now, try again shortly");
+        }
+    }
+
+    /**
+     * Remembers a session opened while handling a request, so its query can be cancelled if the request times out.
+     * Does nothing outside a dispatched request
+     * @param session the session just opened
+     */
+    static void register(Session session) {
+        Task task = current.get();
+        if (task != null) {
+            task.sessions.add(session);
+        }
+    }
+
+    /**
+     * Stops taking requests and waits briefly for the ones already running to finish
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return returns the number of requests waiting for a database thread
+     */
+    public int getQueued() {
+        if (permits != null) {
+            return Math.max(0, maxInFlight - permits.availablePermits() - active.get());
+        }
+        return ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+
+    /**
+     * @return returns the number of requests running on a database thread
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * @return returns true if requests are handled on virtual threads rather than on the platform thread pool
+     */
+    public boolean isVirtual() {
+        return permits != null;
+    }
+
+    /**
+     * Looks the virtual thread executor up reflectively, so this class still compiles and runs on Java 8
+     * @return returns a new virtual thread per task executor, or null if this JVM has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("async.virtualThreads needs Java 21 or later, using the platform thread pool");
+            return null;
+        }
+    }
+
+    private static class Task implements Runnable, AsyncListener {
+        private final HttpServletRequest req;
+        private final GuardedResponse resp;
+        private final Handler handler;
+        private final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+        Task(HttpServletRequest req, GuardedResponse resp, Handler handler) {
+            this.req = req;
+            this.resp = resp;
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            if (resp.isFinished()) {
+                return;
+            }
+            current.set(this);
+            dispatcher.active.incrementAndGet();
+            boolean counting = StatementTracker.begin(req.getMethod() + " " + req.getRequestURI());
+            try {
+                handler.handle(req, resp);
+            } catch (Exception e) {
+                if (!resp.isFinished()) {
+                    logger.error("Request {} {} failed: {}", req.getMethod(), req.getRequestURI(), e.getMessage());
+                    req.setAttribute(RequestDispatcher.ERROR_EXCEPTION, e);
+                    resp.finish(500, "Something went wrong handling this request");
+                    return;
+                }
+            } finally {
+                if (counting) {
+                    StatementTracker.end();
+                }
+                dispatcher.active.decrementAndGet();
+                current.remove();
+            }
+            resp.finish();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            cancelQueries();
+            resp.finish(503, "This request took too long and was cancelled");
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // usually the client went away, nobody is waiting for the answer any more
+            cancelQueries();
+            resp.finish();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            sessions.clear();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // nothing to do, the request is only put in async mode once
+        }
+
+        /**
+         * Cancels the statements the handler is running. Interrupting the database thread would not stop them, JDBC
+         * does not check for interrupts, so the handler carries on until its statement fails or returns
+         */
+        private void cancelQueries() {
+            for (Session session : sessions) {
+                try {
+                    if (session.isOpen()) {
+                        session.cancelQuery();
+                    }
+                } catch (RuntimeException e) {
+                    logger.debug("Could not cancel a query: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
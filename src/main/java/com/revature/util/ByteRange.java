@@ -0,0 +1,96 @@
+package com.revature.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The part of a file to send in response to an HTTP Range header. Only a single range is supported, either
+ * bytes=start-, bytes=start-end or the suffix form bytes=-n for the last n bytes. As RFC 7233 asks, a header that can
+ * not be parsed or asks for several ranges is ignored and the whole file is sent.
+ */
+public class ByteRange {
+    private static final Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private final long start;
+    private final long end;
+    private final long total;
+    private final boolean partial;
+
+    private ByteRange(long start, long end, long total, boolean partial) {
+        this.start = start;
+        this.end = end;
+        this.total = total;
+        this.partial = partial;
+    }
+
+    /**
+     * Works out which bytes of a file to send
+     * @param header the Range header of the request, may be null
+     * @param total the size of the file
+     * @return returns the whole file if there is no header or it is not a single well formed range, the requested
+     * range if there is one, or null if the range starts past the end of the file and the response should be a 416
+     */
+    public static ByteRange parse(String header, long total) {
+        ByteRange whole = new ByteRange(0, total - 1, total, false);
+        if (header == null) {
+            return whole;
+        }
+        Matcher byteRange = BYTE_RANGE.matcher(header.trim());
+        if (!byteRange.matches() || (byteRange.group(1).isEmpty() && byteRange.group(2).isEmpty())) {
+            return whole;
+        }
+        long start;
+        long end = total - 1;
+        if (byteRange.group(1).isEmpty()) {
+            // bytes=-n asks for the last n bytes, a suffix longer than the file is the whole file
+            long suffix = parseOrMax(byteRange.group(2));
+            if (suffix == 0) {
+                return null;
+            }
+            start = Math.max(0, total - suffix);
+        } else {
+            start = parseOrMax(byteRange.group(1));
+            if (!byteRange.group(2).isEmpty()) {
+                long last = parseOrMax(byteRange.group(2));
+                if (last < start) {
+                    // a range that ends before it starts is not valid, rather than not satisfiable
+                    return whole;
+                }
+                end = Math.min(end, last);
+            }
+        }
+        return (start > end) ? null : new ByteRange(start, end, total, true);
+    }
+
+    private static long parseOrMax(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            // only digits get this far, so the number is too big for a long and is past the end of any file
+            return Long.MAX_VALUE;
+        }
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * @return returns the value of the Content-Range header for a partial response
+     */
+    public String toContentRange() {
+        return "bytes " + start + "-" + end + "/" + total;
+    }
+}
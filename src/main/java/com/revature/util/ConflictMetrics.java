@@ -0,0 +1,42 @@
+package com.revature.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the updates rejected because of a concurrent change, per endpoint. Recording never blocks, so counting does
+ * not add contention of its own. Uses the Singleton model since the counts are for the whole application.
+ */
+public class ConflictMetrics {
+    private static final ConflictMetrics metrics = new ConflictMetrics();
+
+    private final ConcurrentMap<String, LongAdder> conflicts = new ConcurrentHashMap<>();
+
+    private ConflictMetrics() {
+        super();
+    }
+
+    public static ConflictMetrics getInstance() {
+        return metrics;
+    }
+
+    /**
+     * Counts one conflict
+     * @param endpoint the method and path of the request that was rejected, e.g. PUT /users
+     */
+    public void record(String endpoint) {
+        conflicts.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * @return returns the number of conflicts of each endpoint that has had one, sorted by endpoint
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> counts = new TreeMap<>();
+        conflicts.forEach((endpoint, count) -> counts.put(endpoint, count.sum()));
+        return counts;
+    }
+}
@@ -0,0 +1,79 @@
+package com.revature.util;
+
+import com.revature.dtos.ConnectionPoolStats;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects live metrics from the Hikari connection pool. Hikari reports every connection checkout to this class, and
+ * the pool sizes are read from the pool on demand. Uses the Singleton model since there is one pool per application.
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory, IMetricsTracker {
+    private static final ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder usageMillis = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private volatile PoolStats poolStats;
+
+    private ConnectionPoolMetrics() {
+        super();
+    }
+
+    public static ConnectionPoolMetrics getInstance() {
+        return metrics;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquired.increment();
+        acquireNanos.add(elapsedAcquiredNanos);
+        maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usageMillis.add(elapsedBorrowedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * Takes a point in time snapshot of the pool
+     * @return returns the current pool metrics, with every value 0 if the pool has not been started
+     */
+    public ConnectionPoolStats snapshot() {
+        ConnectionPoolStats stats = new ConnectionPoolStats();
+        PoolStats pool = poolStats;
+        if (pool != null) {
+            stats.setTotal(pool.getTotalConnections());
+            stats.setActive(pool.getActiveConnections());
+            stats.setIdle(pool.getIdleConnections());
+            stats.setPending(pool.getPendingThreads());
+            stats.setMax(pool.getMaxConnections());
+        }
+        long count = acquired.sum();
+        stats.setAcquired(count);
+        stats.setTimeouts(timeouts.sum());
+        stats.setAvgWaitMillis(count == 0 ? 0 : (double) acquireNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1));
+        stats.setMaxWaitMillis((double) maxAcquireNanos.get() / TimeUnit.MILLISECONDS.toNanos(1));
+        stats.setAvgUsageMillis(count == 0 ? 0 : (double) usageMillis.sum() / count);
+        return stats;
+    }
+}
@@ -0,0 +1,446 @@
+package com.revature.util;
+
+import com.revature.dtos.ErrorResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The response an AsyncDispatcher handler writes to. Once the request has been answered, by the handler returning or
+ * by the dispatcher on a timeout or a client error, the container may recycle the real response for another request,
+ * so from then on anything the handler does to this one is dropped: writes and flushes fail with an IOException, which
+ * stops a handler that is streaming, and status and header changes are ignored. Each change to the response holds a
+ * lock that answering the request also takes, so a request is never completed in the middle of a write; a timeout
+ * waits for at most the one write in progress, which the connector's write timeout bounds.
+ */
+class GuardedResponse extends HttpServletResponseWrapper {
+    private static final Logger logger = LogManager.getLogger(GuardedResponse.class);
+
+    private final AsyncContext context;
+    private final ReentrantLock responseLock = new ReentrantLock();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    GuardedResponse(AsyncContext context, HttpServletResponse response) {
+        super(response);
+        this.context = context;
+    }
+
+    /**
+     * @return returns true once the request has been answered
+     */
+    boolean isFinished() {
+        return finished.get();
+    }
+
+    /**
+     * Completes the request with whatever the handler wrote, unless it has already been answered
+     */
+    void finish() {
+        finish(0, null);
+    }
+
+    /**
+     * Answers the request with an error and completes it, unless it has already been answered. The error is only
+     * written if nothing has been sent yet. May be called from any thread
+     * @param status the status to answer with, or 0 to complete the request as it stands
+     * @param message the message of the error
+     */
+    void finish(int status, String message) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        responseLock.lock();
+        try {
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            if (status > 0 && !response.isCommitted()) {
+                response.resetBuffer();
+                response.setStatus(status);
+                response.setContentType("application/json");
+                response.getWriter().write(JsonCodec.write(new ErrorResponse(status, message)));
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Could not answer the request: {}", e.getMessage());
+        } finally {
+            try {
+                context.complete();
+            } catch (IllegalStateException e) {
+                logger.debug("Request was already completed: {}", e.getMessage());
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes the lock for a change to the response
+     * @return returns true if the change can go ahead, in which case the lock must be released, or false if the
+     * request has already been answered
+     */
+    private boolean enter() {
+        responseLock.lock();
+        if (finished.get()) {
+            responseLock.unlock();
+            return false;
+        }
+        return true;
+    }
+
+    private void enterOrThrow() throws IOException {
+        if (!enter()) {
+            throw new IOException("The request has already been answered");
+        }
+    }
+
+    @Override
+    public synchronized ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            enterOrThrow();
+            try {
+                outputStream = new GuardedOutputStream(super.getOutputStream());
+            } finally {
+                responseLock.unlock();
+            }
+        }
+        return outputStream;
+    }
+
+    @Override
+    public synchronized PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            enterOrThrow();
+            try {
+                writer = new PrintWriter(new GuardedWriter(super.getWriter()));
+            } finally {
+                responseLock.unlock();
+            }
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        enterOrThrow();
+        try {
+            super.flushBuffer();
+        } finally {
+            responseLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        enterOrThrow();
+        try {
+            super.sendError(sc, msg);
+        } finally {
+            responseLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        enterOrThrow();
+        try {
+            super.sendError(sc);
+        } finally {
+            responseLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        enterOrThrow();
+        try {
+            super.sendRedirect(location);
+        } finally {
+            responseLock.unlock();
+        }
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        if (enter()) {
+            try {
+                super.setStatus(sc);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (enter()) {
+            try {
+                super.setHeader(name, value);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (enter()) {
+            try {
+                super.addHeader(name, value);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (enter()) {
+            try {
+                super.setIntHeader(name, value);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if (enter()) {
+            try {
+                super.addIntHeader(name, value);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        if (enter()) {
+            try {
+                super.setDateHeader(name, date);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        if (enter()) {
+            try {
+                super.addDateHeader(name, date);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        if (enter()) {
+            try {
+                super.addCookie(cookie);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setContentType(String type) {
+        if (enter()) {
+            try {
+                super.setContentType(type);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        if (enter()) {
+            try {
+                super.setCharacterEncoding(charset);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        if (enter()) {
+            try {
+                super.setContentLength(len);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (enter()) {
+            try {
+                super.setContentLengthLong(len);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+        if (enter()) {
+            try {
+                super.setLocale(loc);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        if (enter()) {
+            try {
+                super.setBufferSize(size);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        if (enter()) {
+            try {
+                super.reset();
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (enter()) {
+            try {
+                super.resetBuffer();
+            } finally {
+                responseLock.unlock();
+            }
+        }
+    }
+
+    private class GuardedOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+
+        GuardedOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            enterOrThrow();
+            try {
+                out.write(b);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            enterOrThrow();
+            try {
+                out.write(b, off, len);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            enterOrThrow();
+            try {
+                out.flush();
+            } finally {
+                responseLock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the request is completed by the dispatcher, closing early would not make it any sooner
+            flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+    }
+
+    private class GuardedWriter extends Writer {
+        private final PrintWriter out;
+
+        GuardedWriter(PrintWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            enterOrThrow();
+            try {
+                out.write(cbuf, off, len);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            enterOrThrow();
+            try {
+                out.write(str, off, len);
+            } finally {
+                responseLock.unlock();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            enterOrThrow();
+            try {
+                out.flush();
+            } finally {
+                responseLock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -1,74 +1,236 @@
 package com.revature.util;
 
+import com.revature.dtos.CacheRegionStats;
+import com.revature.dtos.QueryStats;
 import com.revature.models.Reimbursement;
 import com.revature.models.User;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
-import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Environment;
-import org.hibernate.service.ServiceRegistry;
+import org.hibernate.query.Query;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.hibernate.tool.hbm2ddl.SchemaValidator;
 
-import java.io.File;
-import java.io.InputStream;
+import javax.persistence.OptimisticLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Handles session creation to the database using Hibernate. Uses programmatic configuration.
+ * Handles session creation to the database using Hibernate. Uses programmatic configuration. The session factory is
+ * built exactly once, normally at deploy time by the HibernateStartupListener, and lazily on first use otherwise.
  */
 public class HibernateUtil {
-    private static SessionFactory sessionFactory;
+    private static final String SEQUENCE_IDS_MAPPING = "META-INF/sequence-ids.orm.xml";
+    // a lock rather than synchronized, so virtual threads waiting for the factory to be built do not pin their carrier
+    private static final ReentrantLock lock = new ReentrantLock();
+    private static volatile SessionFactory sessionFactory;
+    private static StandardServiceRegistry serviceRegistry;
+    private static Metadata metadata;
+
+    /**
+     * Gets the session factory, building it first if it has not been built yet
+     * @return returns the session factory
+     * @throws IllegalStateException thrown if the session factory could not be built, e.g. because of a bad setting.
+     * The next call tries again
+     */
     public static SessionFactory getSessionFactory() {
-        if (sessionFactory == null) {
+        SessionFactory factory = sessionFactory;
+        if (factory == null) {
+            lock.lock();
             try {
-                Configuration configuration = new Configuration();
+                factory = sessionFactory;
+                if (factory == null) {
+                    factory = buildSessionFactory();
+                    sessionFactory = factory;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * Opens a new session. A session opened while handling a request through the AsyncDispatcher has its query
+     * cancelled if the request times out or the client goes away
+     * @return returns the new session
+     */
+    public static Session openSession() {
+        Session session = getSessionFactory().openSession();
+        AsyncDispatcher.register(session);
+        return session;
+    }
+
+    /**
+     * Checks the mapped entities against the tables in the database
+     * @throws org.hibernate.tool.schema.spi.SchemaManagementException thrown if a table or column does not match
+     */
+    public static void validateSchema() {
+        getSessionFactory();
+        new SchemaValidator().validate(metadata, serviceRegistry);
+    }
+
+    /**
+     * Closes the session factory and with it the connection pool
+     */
+    public static void shutdown() {
+        lock.lock();
+        try {
+            if (sessionFactory != null) {
+                sessionFactory.close();
+                sessionFactory = null;
+            }
+            if (serviceRegistry != null) {
+                StandardServiceRegistryBuilder.destroy(serviceRegistry);
+                serviceRegistry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the hit, miss and put counts of every second level and query cache region, sorted by region name
+     * @return returns one entry per region, empty if statistics are turned off
+     */
+    public static List<CacheRegionStats> getCacheStats() {
+        Statistics statistics = getSessionFactory().getStatistics();
+        List<CacheRegionStats> stats = new ArrayList<>();
+        if (!statistics.isStatisticsEnabled()) {
+            return stats;
+        }
+        String[] regions = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(regions);
+        for (String region : regions) {
+            CacheRegionStatistics regionStats = statistics.getCacheRegionStatistics(region);
+            if (regionStats != null) {
+                stats.add(new CacheRegionStats(region, regionStats.getHitCount(), regionStats.getMissCount(),
+                        regionStats.getPutCount()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Gets how often each HQL and native query has run and how long it took, slowest in total first. Entity and
+     * association loads are not queries, StatementTracker.getStatementStats() reports those
+     * @return returns one entry per query, empty if statistics are turned off
+     */
+    public static List<QueryStats> getQueryStats() {
+        Statistics statistics = getSessionFactory().getStatistics();
+        List<QueryStats> stats = new ArrayList<>();
+        if (!statistics.isStatisticsEnabled()) {
+            return stats;
+        }
+        for (String query : statistics.getQueries()) {
+            QueryStatistics queryStats = statistics.getQueryStatistics(query);
+            stats.add(new QueryStats(query, queryStats.getExecutionCount(), queryStats.getExecutionTotalTime(),
+                    queryStats.getExecutionMaxTime()));
+        }
+        stats.sort(Comparator.comparingDouble(QueryStats::getTotalMillis).reversed());
+        return stats;
+    }
 
-                // Hibernate settings equivalent to hibernate.cfg.xml's properties
-                Properties settings = new Properties();
+    /**
+     * Checks whether an update failed because the row had been changed since it was read, whether Hibernate reports it
+     * itself or as a JPA OptimisticLockException, possibly wrapped in a commit failure
+     * @param e the exception the update failed with
+     * @return returns true if a version check failed
+     */
+    public static boolean isConcurrentUpdate(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof StaleStateException || cause instanceof OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                File temp = new File("src/main/resources/properties.properties");
+    /**
+     * Runs a query with the given parameters, returning at most one row. Used to warm the query plan cache.
+     * @param session the open session to run the query in
+     * @param hql the query to run
+     * @param params alternating parameter names and values
+     */
+    public static void warmUpQuery(Session session, String hql, Object... params) {
+        Query<?> query = session.createQuery(hql);
+        for (int i = 0; i < params.length; i += 2) {
+            query.setParameter((String) params[i], params[i + 1]);
+        }
+        query.setMaxResults(1);
+        query.list();
+    }
 
-                if (temp.exists()) {
-                    try {
-                        Properties props = new Properties();
+    private static SessionFactory buildSessionFactory() {
+        try {
+            // Hibernate settings equivalent to hibernate.cfg.xml's properties
+            Properties settings = new Properties();
 
-                        ClassLoader loader = Thread.currentThread().getContextClassLoader();
-                        InputStream input = loader.getResourceAsStream("properties.properties");
+            // url, username and password come from properties.properties or from system properties
+            settings.put(Environment.DRIVER, "org.postgresql.Driver");
+            settings.put(Environment.URL, AppConfig.get("url"));
+            settings.put(Environment.USER, AppConfig.get("username"));
+            settings.put(Environment.PASS, AppConfig.get("password"));
+            settings.put(Environment.DIALECT, "org.hibernate.dialect.PostgreSQL82Dialect");
 
-                        props.load(input);
+            // connections come from the Hikari pool, which hands them out with auto commit already off
+            settings.put(Environment.CONNECTION_PROVIDER, HikariConnectionProvider.class.getName());
+            settings.put(Environment.CONNECTION_PROVIDER_DISABLES_AUTOCOMMIT, "true");
 
-                        settings.put(Environment.DRIVER, "org.postgresql.Driver");
-                        settings.put(Environment.URL, props.getProperty("url"));
-                        settings.put(Environment.USER, props.getProperty("username"));
-                        settings.put(Environment.PASS, props.getProperty("password"));
-                        settings.put(Environment.DIALECT, "org.hibernate.dialect.PostgreSQL82Dialect");
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-                else {
-                    settings.put(Environment.DRIVER, "org.postgresql.Driver");
-                    settings.put(Environment.URL, System.getProperty("url"));
-                    settings.put(Environment.USER, System.getProperty("username"));
-                    settings.put(Environment.PASS, System.getProperty("password"));
-                    settings.put(Environment.DIALECT, "org.hibernate.dialect.PostgreSQL82Dialect");
-                }
+            settings.put(Environment.CURRENT_SESSION_CONTEXT_CLASS, "thread");
 
+            // inserts and updates of the same entity are sent to the database in batches
+            settings.put(Environment.STATEMENT_BATCH_SIZE, AppConfig.get("jdbc.batchSize", "50"));
+            settings.put(Environment.ORDER_INSERTS, "true");
+            settings.put(Environment.ORDER_UPDATES, "true");
 
-                settings.put(Environment.CURRENT_SESSION_CONTEXT_CLASS, "thread");
+            // JDBC can not batch inserts into IDENTITY columns, since each row's id is only known once it is inserted.
+            // With ids.sequence the ids come from the sequences instead, 50 per call to nextval, handed out from memory
+            // by a pooled-lo optimizer that does not hold a monitor around nextval
+            boolean sequenceIds = AppConfig.getBoolean("ids.sequence", false);
+            if (sequenceIds) {
+                settings.put(Environment.PREFERRED_POOLED_OPTIMIZER, LockingPooledLoOptimizer.class.getName());
+            }
+            settings.put(Environment.BATCH_VERSIONED_DATA, "true");
 
-                configuration.setProperties(settings);
+            // users and reimbursements are kept in the second level cache and the status and type lists in the query
+            // cache. The size and time to live of each region are set in application.conf
+            boolean cacheEnabled = AppConfig.getBoolean("cache.enabled", true);
+            settings.put(Environment.USE_SECOND_LEVEL_CACHE, String.valueOf(cacheEnabled));
+            settings.put(Environment.USE_QUERY_CACHE, String.valueOf(cacheEnabled));
+            settings.put(Environment.CACHE_REGION_FACTORY, "jcache");
+            settings.put("hibernate.javax.cache.provider", "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider");
+            // every session and query updates the shared statistics counters, so they are only kept when asked for
+            settings.put(Environment.GENERATE_STATISTICS, AppConfig.get("hibernate.statistics", "false"));
 
-                configuration.addAnnotatedClass(Reimbursement.class);
-                configuration.addAnnotatedClass(User.class);
+            serviceRegistry = new StandardServiceRegistryBuilder().applySettings(settings).build();
 
-                ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
-                        .applySettings(configuration.getProperties()).build();
+            MetadataSources sources = new MetadataSources(serviceRegistry)
+                    .addAnnotatedClass(Reimbursement.class)
+                    .addAnnotatedClass(User.class);
+            if (sequenceIds) {
+                sources.addResource(SEQUENCE_IDS_MAPPING);
+            }
+            metadata = sources.buildMetadata();
 
-                sessionFactory = configuration.buildSessionFactory(serviceRegistry);
-            } catch (Exception e) {
-                e.printStackTrace();
+            return metadata.buildSessionFactory();
+        } catch (Exception e) {
+            if (serviceRegistry != null) {
+                StandardServiceRegistryBuilder.destroy(serviceRegistry);
+                serviceRegistry = null;
             }
+            throw new IllegalStateException("The session factory could not be built: " + e, e);
         }
-        return sessionFactory;
     }
 }
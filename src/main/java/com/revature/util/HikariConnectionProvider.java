@@ -0,0 +1,89 @@
+package com.revature.util;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.Environment;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Hands Hibernate connections from a HikariCP pool instead of Hibernate's built in pool. The pool is sized and tuned
+ * with the pool.* settings read through AppConfig, and any pool.dataSource.* setting is passed straight to the JDBC
+ * driver (for example pool.dataSource.prepareThreshold to control the driver's server side statement cache). Connections
+ * are handed out wrapped by the StatementTracker, which times every statement run on them.
+ */
+public class HikariConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+    private HikariDataSource dataSource;
+
+    @Override
+    public void configure(Map configurationValues) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("ers-pool");
+        config.setDriverClassName((String) configurationValues.get(Environment.DRIVER));
+        config.setJdbcUrl((String) configurationValues.get(Environment.URL));
+        config.setUsername((String) configurationValues.get(Environment.USER));
+        config.setPassword((String) configurationValues.get(Environment.PASS));
+        config.setAutoCommit(false);
+
+        int maxPoolSize = AppConfig.getInt("pool.maximumPoolSize", 10);
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setMinimumIdle(AppConfig.getInt("pool.minimumIdle", maxPoolSize));
+        config.setConnectionTimeout(AppConfig.getLong("pool.connectionTimeout", 30000));
+        config.setIdleTimeout(AppConfig.getLong("pool.idleTimeout", 600000));
+        config.setMaxLifetime(AppConfig.getLong("pool.maxLifetime", 1800000));
+        config.setLeakDetectionThreshold(AppConfig.getLong("pool.leakDetectionThreshold", 0));
+        config.setRegisterMbeans(AppConfig.getBoolean("pool.registerMbeans", true));
+        config.setDataSourceProperties(AppConfig.getWithPrefix("pool.dataSource."));
+        config.setMetricsTrackerFactory(ConnectionPoolMetrics.getInstance());
+
+        dataSource = new HikariDataSource(config);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        return StatementTracker.isEnabled() ? StatementTracker.wrap(connection) : connection;
+    }
+
+    @Override
+    public void closeConnection(Connection conn) throws SQLException {
+        conn.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return ConnectionProvider.class.equals(unwrapType)
+                || HikariConnectionProvider.class.isAssignableFrom(unwrapType)
+                || DataSource.class.isAssignableFrom(unwrapType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (ConnectionProvider.class.equals(unwrapType) || HikariConnectionProvider.class.isAssignableFrom(unwrapType)) {
+            return (T) this;
+        } else if (DataSource.class.isAssignableFrom(unwrapType)) {
+            return (T) dataSource;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+
+    @Override
+    public void stop() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.revature.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.revature.dtos.ApproveDeny;
+import com.revature.dtos.ApproveDenyResult;
+import com.revature.dtos.Credentials;
+import com.revature.dtos.ErrorResponse;
+import com.revature.dtos.RbDTO;
+import com.revature.models.User;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The one place JSON is read and written. A single ObjectMapper is configured when the class loads, and readers and
+ * writers for the types the servlets exchange are built from it up front. ObjectReader and ObjectWriter are immutable
+ * and thread safe, and they keep the serializers and deserializers Jackson builds for their type, so that work is only
+ * done once instead of on every request. Afterburner can be turned on with json.afterburner=true to replace
+ * reflection with generated accessors. Reimbursement imports are read here too, one row at a time, as JSON lines or
+ * as CSV with a header row.
+ */
+public class JsonCodec {
+    private static final ObjectMapper mapper = buildMapper();
+    private static final Map<Class<?>, ObjectReader> readers = new HashMap<>();
+    private static final Map<Class<?>, ObjectWriter> writers = new HashMap<>();
+    private static final ObjectReader approveDenyListReader = mapper.readerFor(new TypeReference<List<ApproveDeny>>() {});
+    private static final ObjectWriter rbDTOListWriter = mapper.writerFor(new TypeReference<List<RbDTO>>() {});
+    private static final ObjectWriter rbDTOStreamWriter = mapper.writerFor(RbDTO.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private static final ObjectWriter resultListWriter = mapper.writerFor(new TypeReference<List<ApproveDenyResult>>() {});
+    private static final ObjectWriter anyWriter = mapper.writer();
+    // imported rows come from other systems, so columns the RbDTO does not have are skipped
+    private static final ObjectReader rbDTOLineReader = mapper.readerFor(RbDTO.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final ObjectReader rbDTOCsvReader = new CsvMapper().readerFor(RbDTO.class)
+            .with(CsvSchema.emptySchema().withHeader())
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    static {
+        for (Class<?> type : new Class<?>[] {RbDTO.class, User.class, Credentials.class, ApproveDeny.class, ErrorResponse.class}) {
+            readers.put(type, mapper.readerFor(type));
+            writers.put(type, mapper.writerFor(type));
+        }
+    }
+
+    private JsonCodec() {
+        super();
+    }
+
+    /**
+     * Reads a value from the input stream, using the prebuilt reader for the type if there is one
+     * @param input the JSON to read, usually the request body
+     * @param type the type to read
+     * @param <T> the type to read
+     * @return returns the value read
+     * @throws IOException thrown if the input is not valid JSON for the type or can not be read
+     */
+    public static <T> T read(InputStream input, Class<T> type) throws IOException {
+        ObjectReader reader = readers.get(type);
+        return (reader == null) ? mapper.readValue(input, type) : reader.readValue(input);
+    }
+
+    /**
+     * Reads a JSON array of ApproveDeny objects
+     * @param input the JSON to read, usually the request body
+     * @return returns the list read
+     * @throws IOException thrown if the input is not a valid array of ApproveDeny or can not be read
+     */
+    public static List<ApproveDeny> readApproveDenies(InputStream input) throws IOException {
+        return approveDenyListReader.readValue(input);
+    }
+
+    /**
+     * Reads reimbursements one at a time from JSON lines, one RbDTO object per line, without holding them all in memory
+     * @param input the rows to read, usually the request body
+     * @return returns an iterator over the rows, which throws a RuntimeException for a row it can not read
+     * @throws IOException thrown if the input can not be read
+     */
+    public static MappingIterator<RbDTO> readRbDTOLines(InputStream input) throws IOException {
+        return rbDTOLineReader.readValues(input);
+    }
+
+    /**
+     * Reads reimbursements one at a time from CSV whose first row names the RbDTO fields of each column, without
+     * holding them all in memory
+     * @param input the rows to read, usually the request body
+     * @return returns an iterator over the rows, which throws a RuntimeException for a row it can not read
+     * @throws IOException thrown if the input can not be read
+     */
+    public static MappingIterator<RbDTO> readRbDTOCsv(InputStream input) throws IOException {
+        return rbDTOCsvReader.readValues(input);
+    }
+
+    /**
+     * Writes a value as a JSON string, using the prebuilt writer for its class if there is one
+     * @param value the value to write
+     * @return returns the JSON
+     * @throws JsonProcessingException thrown if the value can not be serialized
+     */
+    public static String write(Object value) throws JsonProcessingException {
+        ObjectWriter writer = (value == null) ? null : writers.get(value.getClass());
+        return (writer == null) ? anyWriter.writeValueAsString(value) : writer.writeValueAsString(value);
+    }
+
+    /**
+     * Writes a list of reimbursements as a JSON array
+     * @param reimbursements the reimbursements to write
+     * @return returns the JSON
+     * @throws JsonProcessingException thrown if the list can not be serialized
+     */
+    public static String writeRbDTOs(List<RbDTO> reimbursements) throws JsonProcessingException {
+        return rbDTOListWriter.writeValueAsString(reimbursements);
+    }
+
+    /**
+     * Writes the results of a batch approve or deny as a JSON array
+     * @param results the results to write
+     * @return returns the JSON
+     * @throws JsonProcessingException thrown if the list can not be serialized
+     */
+    public static String writeApproveDenyResults(List<ApproveDenyResult> results) throws JsonProcessingException {
+        return resultListWriter.writeValueAsString(results);
+    }
+
+    /**
+     * Opens a generator for writing JSON piece by piece. Closing it does not close the writer
+     * @param writer where to write the JSON
+     * @return returns the generator
+     * @throws IOException thrown if the generator can not be created
+     */
+    public static JsonGenerator createGenerator(Writer writer) throws IOException {
+        return mapper.getFactory().createGenerator(writer);
+    }
+
+    /**
+     * @return returns a writer for one RbDTO at a time into a generator, that leaves flushing to the caller
+     */
+    public static ObjectWriter rbDTOStreamWriter() {
+        return rbDTOStreamWriter;
+    }
+
+    private static ObjectMapper buildMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        // generators are handed writers owned by the servlet container
+        objectMapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (AppConfig.getBoolean("json.afterburner", false)) {
+            objectMapper.registerModule(new AfterburnerModule());
+        }
+        return objectMapper;
+    }
+}
@@ -0,0 +1,112 @@
+package com.revature.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free latency histogram in the style of HdrHistogram. Latencies are counted in microseconds into log linear
+ * buckets: exact below 64 us, and above that 32 buckets per power of two, so any recorded value is known to within
+ * about 3%. Latencies from 1 us up to about 19 hours fit in 1,024 fixed buckets, so recording is one atomic increment
+ * with no allocation, and many threads can record at once without contending on a lock.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 1024;
+    private static final long MAX_MICROS = upperBound(BUCKETS - 1) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sumMicros = new LongAdder();
+
+    /**
+     * Counts one latency
+     * @param nanos the latency in nanoseconds, e.g. the difference of two System.nanoTime() calls
+     */
+    public void record(long nanos) {
+        long micros = Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0), MAX_MICROS);
+        counts.incrementAndGet(bucketOf(micros));
+        sumMicros.add(micros);
+    }
+
+    /**
+     * Counts the latencies at or below each bound, in one pass over the buckets. A bucket is counted under the first
+     * bound its whole range fits below, so a count can include values up to 3% over its bound
+     * @param boundsMicros the bounds in microseconds, in ascending order
+     * @return returns the cumulative count at each bound, followed by the count of every latency
+     */
+    public long[] cumulativeCounts(long[] boundsMicros) {
+        long[] cumulative = new long[boundsMicros.length + 1];
+        int bound = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            long lowest = lowerBound(i);
+            while (bound < boundsMicros.length && lowest > boundsMicros[bound]) {
+                cumulative[bound++] = seen;
+            }
+            seen += count;
+        }
+        while (bound < boundsMicros.length) {
+            cumulative[bound++] = seen;
+        }
+        cumulative[boundsMicros.length] = seen;
+        return cumulative;
+    }
+
+    /**
+     * @param fraction the quantile, e.g. 0.99
+     * @return returns the latency in microseconds that the fraction of the recorded latencies are at or below, or 0
+     * if nothing has been recorded
+     */
+    public long percentileMicros(double fraction) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        long target = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS && total > 0; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return upperBound(i) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return returns the sum of every recorded latency, in microseconds
+     */
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (micros >>> shift);
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS + 1) << shift;
+    }
+}
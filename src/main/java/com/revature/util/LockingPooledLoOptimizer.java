@@ -0,0 +1,76 @@
+package com.revature.util;
+
+import org.hibernate.HibernateException;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.Optimizer;
+
+import java.io.Serializable;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out ids the way Hibernate's pooled-lo optimizer does: each call to nextval reserves the next incrementSize ids,
+ * starting at the value it returns. Hibernate's own optimizer holds a monitor while it calls nextval, and that call
+ * may first have to wait for a pooled connection. On virtual threads that pins the carrier until a connection is
+ * free, and once the carriers are all pinned, by it and by the threads queued behind it, the threads holding the
+ * connections can not run to give one back. This one uses a ReentrantLock instead, which parks the thread. Chosen by
+ * HibernateUtil when ids.sequence is on.
+ */
+public class LockingPooledLoOptimizer implements Optimizer {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int incrementSize;
+    private IntegralDataTypeHolder lastSourceValue;
+    private IntegralDataTypeHolder value;
+    private IntegralDataTypeHolder upperLimitValue;
+
+    /**
+     * Called by Hibernate for each sequence generator
+     * @param returnClass the type of the ids
+     * @param incrementSize how many ids each call to nextval reserves
+     */
+    public LockingPooledLoOptimizer(Class returnClass, int incrementSize) {
+        if (incrementSize < 1) {
+            throw new HibernateException("increment size cannot be less than 1");
+        }
+        this.incrementSize = incrementSize;
+    }
+
+    @Override
+    public Serializable generate(AccessCallback callback) {
+        lock.lock();
+        try {
+            if (lastSourceValue == null || !value.lt(upperLimitValue)) {
+                lastSourceValue = callback.getNextValue();
+                upperLimitValue = lastSourceValue.copy().add(incrementSize);
+                value = lastSourceValue.copy();
+                // a sequence that starts below 1 would hand out ids that are not valid
+                while (value.lt(1)) {
+                    value.increment();
+                }
+            }
+            return value.makeValueThenIncrement();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public IntegralDataTypeHolder getLastSourceValue() {
+        lock.lock();
+        try {
+            return lastSourceValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getIncrementSize() {
+        return incrementSize;
+    }
+
+    @Override
+    public boolean applyIncrementSizeToSourceValues() {
+        return true;
+    }
+}
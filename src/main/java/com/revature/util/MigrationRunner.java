@@ -0,0 +1,246 @@
+package com.revature.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the database schema up to date at startup. The scripts in db/migration are applied in version order, each in
+ * its own transaction, and recorded in the schema_version table so every script runs exactly once per database. A
+ * script that fails is rolled back and stops the run, leaving the database at the last version that succeeded, and a
+ * script that has changed since it was applied stops the run too. An advisory lock is held while migrating so that
+ * several instances starting at once do not migrate twice.
+ * After the scripts, the id sequences are set to go up by as many ids as Hibernate takes per nextval: 50 with
+ * ids.sequence, and 1 without it, so the serial defaults do not skip ids they will never use.
+ */
+public class MigrationRunner {
+    private static final Logger logger = LogManager.getLogger(MigrationRunner.class);
+
+    // every migration, in the order it is applied. A new script is added to the end of this list
+    private static final String[] MIGRATIONS = {
+            "V1__baseline.sql",
+            "V2__reimbursement_indexes.sql",
+            "V3__sequence_increment.sql",
+            "V4__receipt_storage.sql",
+            "V5__reimbursement_type_page_index.sql"
+    };
+    private static final String MIGRATION_DIR = "db/migration/";
+    private static final long ADVISORY_LOCK_KEY = 0x4552534D4947L; // "ERSMIG"
+    // the id sequences and the tables they number, and how many ids Hibernate takes per nextval with ids.sequence
+    private static final String[][] ID_SEQUENCES = {
+            {"ers_users_id_seq", "ers_users"},
+            {"ers_reimbursements_id_seq", "ers_reimbursements"}
+    };
+    private static final int SEQUENCE_ALLOCATION_SIZE = 50;
+    private static final String SELECT_INCREMENT = "select increment_by from pg_sequences "
+            + "where schemaname = current_schema() and sequencename = ?";
+
+    private static final String CREATE_VERSION_TABLE = "create table if not exists schema_version ("
+            + "version int primary key, script varchar(255) not null, checksum bigint not null, "
+            + "installed_on timestamp not null default current_timestamp, execution_ms bigint not null)";
+    private static final String SELECT_APPLIED = "select version, checksum from schema_version";
+    private static final String INSERT_APPLIED = "insert into schema_version (version, script, checksum, execution_ms) "
+            + "values (?, ?, ?, ?)";
+
+    private MigrationRunner() {
+        super();
+    }
+
+    /**
+     * Applies every migration that has not been applied to the database yet, then sets the increment of the id
+     * sequences for ids.sequence
+     * @return returns the number of migrations applied
+     * @throws IllegalStateException thrown if a migration can not be read, fails, or has changed since it was applied
+     */
+    public static int migrate() {
+        try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            return session.doReturningWork(MigrationRunner::migrate);
+        }
+    }
+
+    private static int migrate(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("select pg_advisory_lock(" + ADVISORY_LOCK_KEY + ")");
+            try {
+                statement.execute(CREATE_VERSION_TABLE);
+                int applied = applyPending(connection);
+                int increment = AppConfig.getBoolean("ids.sequence", false) ? SEQUENCE_ALLOCATION_SIZE : 1;
+                for (String[] sequence : ID_SEQUENCES) {
+                    setIncrement(connection, sequence[0], sequence[1], increment);
+                }
+                return applied;
+            } finally {
+                statement.execute("select pg_advisory_unlock(" + ADVISORY_LOCK_KEY + ")");
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static int applyPending(Connection connection) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SELECT_APPLIED)) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+
+        int count = 0;
+        for (String script : MIGRATIONS) {
+            int version = versionOf(script);
+            String sql = read(script);
+            long checksum = checksum(sql);
+            Long appliedChecksum = applied.get(version);
+            if (appliedChecksum != null) {
+                if (appliedChecksum != checksum) {
+                    throw new IllegalStateException("Migration " + script + " has changed since it was applied. "
+                            + "Restore it and put the change in a new migration");
+                }
+                continue;
+            }
+            apply(connection, version, script, sql, checksum);
+            count++;
+        }
+        return count;
+    }
+
+    private static void apply(Connection connection, int version, String script, String sql, long checksum)
+            throws SQLException {
+        long start = System.nanoTime();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement();
+             PreparedStatement record = connection.prepareStatement(INSERT_APPLIED)) {
+            for (String each : splitStatements(sql)) {
+                statement.execute(each);
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            record.setInt(1, version);
+            record.setString(2, script);
+            record.setLong(3, checksum);
+            record.setLong(4, millis);
+            record.executeUpdate();
+            connection.commit();
+            logger.info("Applied migration {} in {} ms", script, millis);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new IllegalStateException("Migration " + script + " failed: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Changes how far each nextval moves a sequence on, if it is not already that. The sequence is first moved past
+     * every id in its table and every id in the block handed out by its last nextval, so no id is given out twice
+     * whichever way the increment changes
+     * @param connection the connection, in auto commit mode
+     * @param sequence the name of the sequence
+     * @param table the table whose id column it numbers
+     * @param increment the increment it should have
+     * @throws SQLException thrown if the sequence can not be read or changed
+     */
+    private static void setIncrement(Connection connection, String sequence, String table, int increment)
+            throws SQLException {
+        long current;
+        try (PreparedStatement select = connection.prepareStatement(SELECT_INCREMENT)) {
+            select.setString(1, sequence);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalStateException("Sequence " + sequence + " does not exist");
+                }
+                current = rs.getLong(1);
+            }
+        }
+        if (current == increment) {
+            return;
+        }
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("lock table " + table + " in exclusive mode");
+            statement.execute("select setval('" + sequence + "', greatest((select coalesce(max(id), 0) from " + table
+                    + "), (select last_value + " + (current - 1) + " from " + sequence + ")))");
+            statement.execute("alter sequence " + sequence + " increment by " + increment);
+            connection.commit();
+            logger.info("Set the increment of {} from {} to {}", sequence, current, increment);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new IllegalStateException("The increment of " + sequence + " could not be set: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Splits a script into statements at each semicolon that ends a line. Lines that are only a comment are dropped.
+     * Scripts must not put a semicolon at the end of a line inside a string or a function body
+     * @param sql the script
+     * @return returns the statements, without their semicolons
+     */
+    static List<String> splitStatements(String sql) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : sql.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            if (trimmed.endsWith(";")) {
+                current.append(trimmed, 0, trimmed.length() - 1);
+                statements.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(trimmed).append('\n');
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString());
+        }
+        return statements;
+    }
+
+    private static int versionOf(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    private static long checksum(String sql) {
+        CRC32 crc = new CRC32();
+        crc.update(sql.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static String read(String script) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream in = loader.getResourceAsStream(MIGRATION_DIR + script)) {
+            if (in == null) {
+                throw new IllegalStateException("Migration " + script + " is not on the classpath");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Migration " + script + " could not be read", e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.revature.util;
+
+import com.revature.exceptions.InvalidPageRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * An opaque keyset cursor for paging through reimbursements ordered by (submitted, id). The cursor holds the submitted
+ * time (to the nanosecond, so rows sharing a second are never skipped) and the id of the last row of a page.
+ */
+public class PageCursor {
+    private final Timestamp submitted;
+    private final int id;
+
+    public PageCursor(Timestamp submitted, int id) {
+        this.submitted = submitted;
+        this.id = id;
+    }
+
+    public Timestamp getSubmitted() {
+        return submitted;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Encodes the cursor as a url safe token that can be handed back to the client
+     * @return returns the token form of this cursor
+     */
+    public String encode() {
+        String raw = (submitted.getTime() / 1000) + ":" + submitted.getNanos() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token that was previously produced by encode()
+     * @param token the token sent by the client
+     * @return returns the decoded cursor
+     * @throws InvalidPageRequestException thrown if the token was not produced by this class
+     */
+    public static PageCursor decode(String token) throws InvalidPageRequestException {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException();
+            }
+            Timestamp submitted = new Timestamp(Long.parseLong(parts[0]) * 1000);
+            submitted.setNanos(Integer.parseInt(parts[1]));
+            return new PageCursor(submitted, Integer.parseInt(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("The provided cursor is not valid: " + token);
+        }
+    }
+}
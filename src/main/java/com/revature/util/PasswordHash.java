@@ -1,33 +1,198 @@
 package com.revature.util;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Class that hashes passwords going into the database using the MD5 encrypter.
+ * Hashes and verifies passwords with salted PBKDF2 (HMAC-SHA256). Hashes are stored as
+ * pbkdf2-sha256$iterations$salt$hash, so the cost can be raised with password.iterations without invalidating the
+ * hashes already stored; older and unsalted MD5 hashes are still verified and reported by needsRehash.
+ * Hashing is deliberately slow, so it runs on a pool of password.threads threads (one per core by default) with a
+ * queue of password.queueSize. A login storm then waits in that queue, or is turned away with a
+ * RejectedExecutionException once it is full, instead of taking every request thread's CPU.
+ * Uses the Singleton model since there is one pool per application.
  */
 public class PasswordHash {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int KEY_BITS = 256;
+    private static final int SALT_BYTES = 16;
+    // a stored hash claiming more than this is not verified, so one bad row can not hold a hashing thread for long
+    private static final int MAX_ITERATIONS = 10_000_000;
+
     private static PasswordHash hash = new PasswordHash();
 
+    private final int iterations = AppConfig.getInt("password.iterations", 310_000);
+    private final long timeoutMillis = AppConfig.getInt("password.timeoutMillis", 5_000);
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadPoolExecutor executor;
+    // verified against when a username does not exist, so a login takes as long whether or not it does
+    private final String unknownUserHash;
+
+    private PasswordHash() {
+        int threads = AppConfig.getInt("password.threads", Runtime.getRuntime().availableProcessors());
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(AppConfig.getInt("password.queueSize", 256)), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        unknownUserHash = encode(iterations, new byte[SALT_BYTES], "");
+    }
+
     public static PasswordHash getInstance() {
         return hash;
     }
 
-    public String hashing(String password) {
+    /**
+     * Hashes a password with a new random salt at the configured cost
+     * @param password the password to hash
+     * @return returns the encoded hash to store
+     * @throws RejectedExecutionException thrown if too many passwords are already waiting to be hashed
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return run(() -> encode(iterations, salt, password));
+    }
+
+    /**
+     * Checks a password against a stored hash, in the current format or the old MD5 one
+     * @param password the password to check
+     * @param stored the stored hash, or null if there is no such user
+     * @return returns true if the password matches
+     * @throws RejectedExecutionException thrown if too many passwords are already waiting to be hashed
+     */
+    public boolean verify(String password, String stored) {
+        return run(() -> matches(password, stored == null ? unknownUserHash : stored) && stored != null);
+    }
+
+    /**
+     * @param stored a stored hash
+     * @return returns true if the hash is in the old MD5 format, is not a valid hash, or was made at a lower cost
+     * than is configured now
+     */
+    public boolean needsRehash(String stored) {
+        Pbkdf2Hash parsed = Pbkdf2Hash.parse(stored);
+        return parsed == null || parsed.iterations < iterations;
+    }
+
+    private boolean matches(String password, String stored) {
+        if (!stored.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(legacyMd5(password).getBytes(StandardCharsets.US_ASCII),
+                    stored.getBytes(StandardCharsets.US_ASCII));
+        }
+        Pbkdf2Hash parsed = Pbkdf2Hash.parse(stored);
+        return parsed != null && MessageDigest.isEqual(pbkdf2(password, parsed.salt, parsed.iterations), parsed.hash);
+    }
+
+    private static String encode(int iterations, byte[] salt, String password) {
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_BITS);
         try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            md.update(password.getBytes());
-            byte[] bytes = md.digest();
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
 
+    private static String legacyMd5(String password) {
+        try {
+            byte[] bytes = MessageDigest.getInstance("MD5").digest(password.getBytes());
             StringBuilder sb = new StringBuilder();
             for (byte bit: bytes) {
                 sb.append(Integer.toString((bit & 0xff)+ 0x100, 16).substring(1));
             }
-
             return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    /**
+     * Runs a hashing task on the pool and waits for it. A task that times out while still queued never runs, but one
+     * that has started can not be stopped, PBKDF2 does not check for interrupts. It finishes on its pool thread and
+     * its result is dropped; MAX_ITERATIONS bounds how long that can take
+     * @param task the hashing to run
+     * @return returns the result of the task
+     * @throws RejectedExecutionException thrown if the queue is full, or the task did not finish in time
+     */
+    private <T> T run(Callable<T> task) {
+        Future<T> future = executor.submit(task);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RejectedExecutionException("Password hashing timed out after " + timeoutMillis + " ms");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof RuntimeException) ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * A stored hash in the current format, split into its parts. Anything that does not parse is not a hash
+     */
+    private static class Pbkdf2Hash {
+        private final int iterations;
+        private final byte[] salt;
+        private final byte[] hash;
+
+        private Pbkdf2Hash(int iterations, byte[] salt, byte[] hash) {
+            this.iterations = iterations;
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+        /**
+         * @param stored a stored hash
+         * @return returns the parts of the hash, or null if it is not a well formed hash in the current format
+         */
+        static Pbkdf2Hash parse(String stored) {
+            if (stored == null || !stored.startsWith(PREFIX)) {
+                return null;
+            }
+            String[] parts = stored.split("\\$", -1);
+            if (parts.length != 4) {
+                return null;
+            }
+            try {
+                int iterations = Integer.parseInt(parts[1]);
+                byte[] salt = Base64.getDecoder().decode(parts[2]);
+                byte[] hash = Base64.getDecoder().decode(parts[3]);
+                if (iterations < 1 || iterations > MAX_ITERATIONS || salt.length == 0 || hash.length != KEY_BITS / 8) {
+                    return null;
+                }
+                return new Pbkdf2Hash(iterations, salt, hash);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
         }
-        return null;
     }
 }
@@ -0,0 +1,129 @@
+package com.revature.util;
+
+import com.revature.dtos.ConnectionPoolStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes the application's metrics in the Prometheus text exposition format (version 0.0.4): the request latency
+ * histograms, in flight gauges and error counters from RequestMetrics, and the state of the connection pool, the
+ * async dispatcher and the conflict counts. Series are sorted so consecutive scrapes line up when read by eye.
+ */
+public class PrometheusExporter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    // the histogram buckets, in seconds, from a fast cached read up to the async timeout
+    private static final double[] BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+    private static final long[] BUCKET_MICROS = new long[BUCKETS.length];
+    private static final Comparator<RequestMetrics.Series> BY_LABELS = Comparator
+            .comparing(RequestMetrics.Series::getRoute)
+            .thenComparing(RequestMetrics.Series::getMethod)
+            .thenComparing(series -> series.getDetail() == null ? "" : series.getDetail());
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BUCKET_MICROS[i] = Math.round(BUCKETS[i] * TimeUnit.SECONDS.toMicros(1));
+        }
+    }
+
+    private PrometheusExporter() {
+        super();
+    }
+
+    /**
+     * @return returns every metric in the Prometheus text format
+     */
+    public static String export() {
+        StringBuilder out = new StringBuilder(8192);
+        writeRequests(out, RequestMetrics.getInstance());
+        writePool(out, ConnectionPoolMetrics.getInstance().snapshot());
+        writeDispatcher(out, AsyncDispatcher.getInstance());
+        writeConflicts(out, ConflictMetrics.getInstance().snapshot());
+        return out.toString();
+    }
+
+    private static void writeRequests(StringBuilder out, RequestMetrics metrics) {
+        header(out, "http_server_request_duration_seconds", "histogram",
+                "Time from a request arriving to its response being complete");
+        for (Map.Entry<RequestMetrics.Series, LatencyHistogram> entry : sorted(metrics.getLatencies())) {
+            RequestMetrics.Series series = entry.getKey();
+            String labels = "route=\"" + escape(series.getRoute()) + "\",method=\"" + series.getMethod()
+                    + "\",status=\"" + series.getDetail() + "\"";
+            long[] counts = entry.getValue().cumulativeCounts(BUCKET_MICROS);
+            for (int i = 0; i < BUCKETS.length; i++) {
+                out.append("http_server_request_duration_seconds_bucket{").append(labels).append(",le=\"")
+                        .append(BUCKETS[i]).append("\"} ").append(counts[i]).append('\n');
+            }
+            out.append("http_server_request_duration_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ")
+                    .append(counts[BUCKETS.length]).append('\n');
+            out.append("http_server_request_duration_seconds_sum{").append(labels).append("} ")
+                    .append(entry.getValue().getSumMicros() / 1e6).append('\n');
+            out.append("http_server_request_duration_seconds_count{").append(labels).append("} ")
+                    .append(counts[BUCKETS.length]).append('\n');
+        }
+
+        header(out, "http_server_requests_in_flight", "gauge", "Requests being handled right now");
+        for (Map.Entry<RequestMetrics.Series, AtomicInteger> entry : sorted(metrics.getInFlight())) {
+            RequestMetrics.Series series = entry.getKey();
+            out.append("http_server_requests_in_flight{route=\"").append(escape(series.getRoute()))
+                    .append("\",method=\"").append(series.getMethod()).append("\"} ").append(entry.getValue().get())
+                    .append('\n');
+        }
+
+        header(out, "http_server_errors_total", "counter",
+                "Requests that threw, timed out or were answered with a 5xx status");
+        for (Map.Entry<RequestMetrics.Series, LongAdder> entry : sorted(metrics.getErrors())) {
+            RequestMetrics.Series series = entry.getKey();
+            out.append("http_server_errors_total{route=\"").append(escape(series.getRoute()))
+                    .append("\",method=\"").append(series.getMethod()).append("\",cause=\"")
+                    .append(series.getDetail()).append("\"} ").append(entry.getValue().sum()).append('\n');
+        }
+    }
+
+    private static void writePool(StringBuilder out, ConnectionPoolStats pool) {
+        header(out, "db_pool_connections", "gauge", "Connections in the pool by state");
+        out.append("db_pool_connections{state=\"active\"} ").append(pool.getActive()).append('\n');
+        out.append("db_pool_connections{state=\"idle\"} ").append(pool.getIdle()).append('\n');
+        out.append("db_pool_connections{state=\"max\"} ").append(pool.getMax()).append('\n');
+        header(out, "db_pool_pending_threads", "gauge", "Threads waiting for a connection");
+        out.append("db_pool_pending_threads ").append(pool.getPending()).append('\n');
+        header(out, "db_pool_acquired_total", "counter", "Connections handed out by the pool");
+        out.append("db_pool_acquired_total ").append(pool.getAcquired()).append('\n');
+        header(out, "db_pool_timeouts_total", "counter", "Waits for a connection that timed out");
+        out.append("db_pool_timeouts_total ").append(pool.getTimeouts()).append('\n');
+    }
+
+    private static void writeDispatcher(StringBuilder out, AsyncDispatcher dispatcher) {
+        header(out, "async_dispatcher_requests", "gauge", "Requests queued for or running on a database thread");
+        out.append("async_dispatcher_requests{state=\"queued\"} ").append(dispatcher.getQueued()).append('\n');
+        out.append("async_dispatcher_requests{state=\"active\"} ").append(dispatcher.getActive()).append('\n');
+    }
+
+    private static void writeConflicts(StringBuilder out, Map<String, Long> conflicts) {
+        header(out, "http_server_conflicts_total", "counter", "Updates rejected because of a concurrent change");
+        for (Map.Entry<String, Long> entry : conflicts.entrySet()) {
+            out.append("http_server_conflicts_total{endpoint=\"").append(escape(entry.getKey())).append("\"} ")
+                    .append(entry.getValue()).append('\n');
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static <V> List<Map.Entry<RequestMetrics.Series, V>> sorted(Map<RequestMetrics.Series, V> series) {
+        List<Map.Entry<RequestMetrics.Series, V>> entries = new ArrayList<>(series.entrySet());
+        entries.sort(Map.Entry.comparingByKey(BY_LABELS));
+        return entries;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
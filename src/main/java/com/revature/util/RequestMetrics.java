@@ -0,0 +1,210 @@
+package com.revature.util;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the latency, in flight count and errors of the requests the application serves, per route, method and
+ * status. A route is the request path with ids replaced by {id}, followed by the names of the query parameters that
+ * select a branch of the servlet (those in metrics.routeParameters), e.g. /reimburse?limit&amp;status. At most
+ * metrics.maxRoutes routes are told apart, any after that are counted as "other". Recording never blocks.
+ * Uses the Singleton model since the metrics are for the whole application.
+ */
+public class RequestMetrics {
+    private static final RequestMetrics metrics = new RequestMetrics();
+    private static final Pattern ID_SEGMENT = Pattern.compile("\\d+|[0-9a-fA-F-]{16,}");
+    private static final String OTHER = "other";
+    private static final Set<String> METHODS = new HashSet<>(
+            Arrays.asList("GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "TRACE"));
+
+    private final ConcurrentMap<Series, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Series, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Series, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Set<String> routes = ConcurrentHashMap.newKeySet();
+    private final int maxRoutes = AppConfig.getInt("metrics.maxRoutes", 500);
+    private final List<String> routeParameters = parseParameters(
+            AppConfig.get("metrics.routeParameters", "id,type,status,after,limit,sort,stream"));
+
+    /**
+     * One labelled time series: a route and method, and a status or error cause where the metric has one
+     */
+    public static final class Series {
+        private final String route;
+        private final String method;
+        private final String detail;
+
+        Series(String route, String method, String detail) {
+            this.route = route;
+            this.method = method;
+            this.detail = detail;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * @return returns the status of a latency series, the cause of an error series, or null for an in flight one
+         */
+        public String getDetail() {
+            return detail;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Series series = (Series) o;
+            return route.equals(series.route) && method.equals(series.method) && Objects.equals(detail, series.detail);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(route, method, detail);
+        }
+    }
+
+    private RequestMetrics() {
+        super();
+    }
+
+    public static RequestMetrics getInstance() {
+        return metrics;
+    }
+
+    /**
+     * Works out the route a request is counted under
+     * @param req the client request
+     * @return returns the templated path and branch parameters of the request, or "other" once there are too many
+     */
+    public String routeOf(HttpServletRequest req) {
+        String path = req.getServletPath() + (req.getPathInfo() == null ? "" : req.getPathInfo());
+        StringBuilder route = new StringBuilder(path.length() + 16);
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                route.append('/').append(ID_SEGMENT.matcher(segment).matches() ? "{id}" : segment);
+            }
+        }
+        if (route.length() == 0) {
+            route.append('/');
+        }
+        // read from the query string, asking for the parameters would consume a form body before the servlet sees it
+        Set<String> sent = new HashSet<>();
+        if (req.getQueryString() != null) {
+            for (String pair : req.getQueryString().split("&")) {
+                int equals = pair.indexOf('=');
+                sent.add(equals < 0 ? pair : pair.substring(0, equals));
+            }
+        }
+        char separator = '?';
+        for (String parameter : routeParameters) {
+            if (sent.contains(parameter)) {
+                route.append(separator).append(parameter);
+                separator = '&';
+            }
+        }
+        String name = route.toString();
+        if (routes.contains(name)) {
+            return name;
+        }
+        if (routes.size() >= maxRoutes) {
+            return OTHER;
+        }
+        routes.add(name);
+        return name;
+    }
+
+    /**
+     * @param req the client request
+     * @return returns the HTTP method of the request, or "other" for a method no servlet handles
+     */
+    public String methodOf(HttpServletRequest req) {
+        return METHODS.contains(req.getMethod()) ? req.getMethod() : OTHER;
+    }
+
+    /**
+     * Counts a request as in flight
+     * @param route the route of the request
+     * @param method the HTTP method
+     */
+    public void started(String route, String method) {
+        inFlight.computeIfAbsent(new Series(route, method, null), key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    /**
+     * Records the latency of a request that has been answered and counts it as no longer in flight
+     * @param route the route of the request
+     * @param method the HTTP method
+     * @param status the status it was answered with
+     * @param nanos how long it took
+     */
+    public void finished(String route, String method, int status, long nanos) {
+        AtomicInteger running = inFlight.get(new Series(route, method, null));
+        if (running != null) {
+            running.decrementAndGet();
+        }
+        latencies.computeIfAbsent(new Series(route, method, String.valueOf(status)), key -> new LatencyHistogram())
+                .record(nanos);
+        if (status >= 500) {
+            error(route, method, "server_error");
+        }
+    }
+
+    /**
+     * Counts an error
+     * @param route the route of the request
+     * @param method the HTTP method
+     * @param cause what went wrong: exception, timeout or server_error
+     */
+    public void error(String route, String method, String cause) {
+        errors.computeIfAbsent(new Series(route, method, cause), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * @return returns the latency histogram of every route, method and status that has been answered
+     */
+    public ConcurrentMap<Series, LatencyHistogram> getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * @return returns the requests in flight on every route and method that has had a request
+     */
+    public ConcurrentMap<Series, AtomicInteger> getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return returns the error count of every route, method and cause that has had an error
+     */
+    public ConcurrentMap<Series, LongAdder> getErrors() {
+        return errors;
+    }
+
+    private static List<String> parseParameters(String names) {
+        List<String> parameters = new ArrayList<>();
+        for (String name : names.split(",")) {
+            if (!name.trim().isEmpty()) {
+                parameters.add(name.trim());
+            }
+        }
+        // sorted so a route reads the same whatever order the parameters were sent in
+        return Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(parameters)));
+    }
+}
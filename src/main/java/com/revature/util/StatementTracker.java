@@ -0,0 +1,278 @@
+package com.revature.util;
+
+import com.revature.dtos.QueryStats;
+import com.revature.exceptions.RepeatedStatementException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Watches every statement the application sends through the connection pool. Statements are grouped by shape, the
+ * SQL with any literals replaced by ?, and the count, total and maximum time of each shape are kept for
+ * /diagnostics/statements. A statement slower than sql.slowQueryMillis is logged with its SQL and the types of its
+ * bind parameters (never their values). Within a request, a shape that runs more than sql.nPlusOneThreshold times is
+ * logged as a likely N+1 once the request is done, or fails before it runs again if sql.nPlusOneFail is set, which is
+ * meant for tests. Work that repeats a statement on purpose, such as reading a download in chunks or saving an import
+ * row by row, calls expectRepeats() to leave the rest of its request out of the check. Both checks can be turned off
+ * with a threshold of 0.
+ */
+public class StatementTracker {
+    private static final Logger logger = LogManager.getLogger(StatementTracker.class);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final long slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(AppConfig.getInt("sql.slowQueryMillis", 500));
+    private static final int nPlusOneThreshold = AppConfig.getInt("sql.nPlusOneThreshold", 20);
+    private static final boolean nPlusOneFail = AppConfig.getBoolean("sql.nPlusOneFail", false);
+    private static final int maxShapes = AppConfig.getInt("sql.maxShapes", 1000);
+    private static final String OTHER_SHAPE = "other";
+
+    // shapes by their normalised SQL, and by the exact SQL of prepared statements so theirs is only normalised once
+    private static final ConcurrentMap<String, Shape> shapes = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Shape> prepared = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Scope> scope = new ThreadLocal<>();
+
+    private StatementTracker() {
+        super();
+    }
+
+    /**
+     * @return returns true if statements are slow query logged or counted per request
+     */
+    public static boolean isEnabled() {
+        return slowQueryNanos > 0 || nPlusOneThreshold > 0;
+    }
+
+    /**
+     * Wraps a connection so that the statements it prepares and creates are tracked
+     * @param connection a connection from the pool
+     * @return returns a connection that behaves like the given one
+     */
+    public static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(StatementTracker.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+    }
+
+    /**
+     * Starts counting the statements run on this thread for the N+1 check, unless a count is already running
+     * @param label what is being counted, e.g. the method and URI of a request
+     * @return returns true if a count was started, in which case end() must be called
+     */
+    public static boolean begin(String label) {
+        if (nPlusOneThreshold <= 0 || scope.get() != null) {
+            return false;
+        }
+        scope.set(new Scope(label));
+        return true;
+    }
+
+    /**
+     * Stops counting the statements run on this thread and logs every shape that ran more often than the threshold
+     */
+    public static void end() {
+        Scope finished = scope.get();
+        scope.remove();
+        if (finished == null) {
+            return;
+        }
+        for (Map.Entry<Shape, int[]> entry : finished.counts.entrySet()) {
+            if (entry.getValue()[0] > nPlusOneThreshold) {
+                logger.warn("Possible N+1: {} ran the same statement {} times: {}", finished.label,
+                        entry.getValue()[0], entry.getKey().sql);
+            }
+        }
+    }
+
+    /**
+     * Stops counting the statements run on this thread for the N+1 check until the current count ends, for work that
+     * runs the same statement many times on purpose. Does nothing if no count is running
+     */
+    public static void expectRepeats() {
+        Scope current = scope.get();
+        if (current != null) {
+            current.repeatsExpected = true;
+        }
+    }
+
+    /**
+     * Gets the count, total and maximum time of every statement shape, slowest in total first
+     * @return returns one entry per shape seen since the application started
+     */
+    public static List<QueryStats> getStatementStats() {
+        List<QueryStats> stats = new ArrayList<>();
+        for (Shape shape : shapes.values()) {
+            QueryStats each = shape.snapshot();
+            if (each.getExecutions() > 0) {
+                stats.add(each);
+            }
+        }
+        stats.sort(Comparator.comparingDouble(QueryStats::getTotalMillis).reversed());
+        return stats;
+    }
+
+    private static Shape shapeOf(String sql, boolean isPrepared) {
+        Shape shape = isPrepared ? prepared.get(sql) : null;
+        if (shape != null) {
+            return shape;
+        }
+        String normalised = NUMBER_LITERAL.matcher(STRING_LITERAL.matcher(sql).replaceAll("?")).replaceAll("?");
+        shape = shapes.get(normalised);
+        if (shape == null) {
+            String key = shapes.size() < maxShapes ? normalised : OTHER_SHAPE;
+            shape = shapes.computeIfAbsent(key, Shape::new);
+        }
+        if (isPrepared && prepared.size() < maxShapes) {
+            prepared.putIfAbsent(sql, shape);
+        }
+        return shape;
+    }
+
+    /**
+     * Counts a statement that is about to run against the current request. Fails it, before it reaches the database,
+     * if it is one run too many and sql.nPlusOneFail is set
+     */
+    private static void counting(Shape shape) {
+        Scope current = scope.get();
+        if (current == null || current.repeatsExpected) {
+            return;
+        }
+        int count = ++current.counts.computeIfAbsent(shape, key -> new int[1])[0];
+        if (nPlusOneFail && count > nPlusOneThreshold) {
+            throw new RepeatedStatementException(current.label + " ran the same statement " + count
+                    + " times: " + shape.sql);
+        }
+    }
+
+    private static void executed(Shape shape, long nanos, List<String> binds) {
+        shape.record(nanos);
+        if (slowQueryNanos > 0 && nanos >= slowQueryNanos) {
+            logger.warn("Slow statement ({} ms, binds {}): {}", TimeUnit.NANOSECONDS.toMillis(nanos), binds, shape.sql);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The statements one request has run, by shape. Only touched by the thread handling the request
+     */
+    private static class Scope {
+        private final String label;
+        private final Map<Shape, int[]> counts = new HashMap<>();
+        private boolean repeatsExpected;
+
+        Scope(String label) {
+            this.label = label;
+        }
+    }
+
+    private static class Shape {
+        private final String sql;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+        Shape(String sql) {
+            this.sql = sql;
+        }
+
+        void record(long nanos) {
+            executions.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        QueryStats snapshot() {
+            double nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1);
+            return new QueryStats(sql, executions.sum(), totalNanos.sum() / nanosPerMilli, maxNanos.get() / nanosPerMilli);
+        }
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = StatementTracker.invoke(connection, method, args);
+            if ("prepareStatement".equals(method.getName())) {
+                return Proxy.newProxyInstance(StatementTracker.class.getClassLoader(),
+                        new Class<?>[] {PreparedStatement.class}, new StatementHandler(result, (String) args[0]));
+            } else if ("createStatement".equals(method.getName())) {
+                return Proxy.newProxyInstance(StatementTracker.class.getClassLoader(),
+                        new Class<?>[] {Statement.class}, new StatementHandler(result, null));
+            }
+            return result;
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final Object statement;
+        // the SQL of a prepared statement, null for a plain one whose SQL comes with each execute
+        private final String sql;
+        private final List<String> binds = new ArrayList<>();
+
+        StatementHandler(Object statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                String executed = (sql != null) ? sql : (args != null && args.length > 0) ? (String) args[0] : null;
+                if (executed == null) {
+                    return StatementTracker.invoke(statement, method, args);
+                }
+                Shape shape = shapeOf(executed, sql != null);
+                counting(shape);
+                long start = System.nanoTime();
+                try {
+                    return StatementTracker.invoke(statement, method, args);
+                } finally {
+                    executed(shape, System.nanoTime() - start, new ArrayList<>(binds));
+                }
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                recordBind((Integer) args[0], "setNull".equals(name) || args[1] == null
+                        ? "null" : args[1].getClass().getSimpleName());
+            } else if ("clearParameters".equals(name)) {
+                binds.clear();
+            }
+            return StatementTracker.invoke(statement, method, args);
+        }
+
+        private void recordBind(int index, String type) {
+            while (binds.size() < index) {
+                binds.add("?");
+            }
+            binds.set(index - 1, type);
+        }
+    }
+}
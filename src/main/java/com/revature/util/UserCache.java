@@ -0,0 +1,171 @@
+package com.revature.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.revature.dtos.UserCacheStats;
+import com.revature.models.User;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in memory cache of users, looked up by id, username or email. It is bounded by userCache.maximumSize and entries
+ * expire after userCache.ttlSeconds so that changes made by other instances are picked up eventually. Usernames and
+ * emails that were looked up and not found are remembered for userCache.absentTtlSeconds, which should be short since a
+ * new user may register them at any moment. Users are copied on the way in and on the way out, so callers can not
+ * change what is cached.
+ * The username and email indexes only hold the id of the user, and are checked against the cached user on every read,
+ * so a stale index entry is never returned.
+ */
+public class UserCache {
+    private final Cache<Integer, User> byId;
+    private final Cache<String, Integer> byUsername;
+    private final Cache<String, Integer> byEmail;
+    private final Cache<String, Boolean> absent;
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder absentHits = new LongAdder();
+
+    public UserCache() {
+        long maximumSize = AppConfig.getLong("userCache.maximumSize", 10_000);
+        long ttlSeconds = AppConfig.getLong("userCache.ttlSeconds", 600);
+        long absentTtlSeconds = AppConfig.getLong("userCache.absentTtlSeconds", 5);
+        byId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        byUsername = Caffeine.newBuilder().maximumSize(maximumSize).build();
+        byEmail = Caffeine.newBuilder().maximumSize(maximumSize).build();
+        absent = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(absentTtlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @param id the id of the user
+     * @return returns a copy of the cached user, or empty if the user is not cached
+     */
+    public Optional<User> getById(int id) {
+        return Optional.ofNullable(byId.getIfPresent(id)).map(UserCache::copy);
+    }
+
+    /**
+     * @param username the username of the user
+     * @return returns a copy of the cached user, or empty if the user is not cached
+     */
+    public Optional<User> getByUsername(String username) {
+        Integer id = (username == null) ? null : byUsername.getIfPresent(username);
+        User user = (id == null) ? null : byId.getIfPresent(id);
+        if (user == null || !username.equals(user.getUsername())) {
+            return Optional.empty();
+        }
+        return Optional.of(copy(user));
+    }
+
+    /**
+     * @param email the email of the user
+     * @return returns a copy of the cached user, or empty if the user is not cached
+     */
+    public Optional<User> getByEmail(String email) {
+        Integer id = (email == null) ? null : byEmail.getIfPresent(email);
+        User user = (id == null) ? null : byId.getIfPresent(id);
+        if (user == null || !email.equals(user.getEmail())) {
+            return Optional.empty();
+        }
+        return Optional.of(copy(user));
+    }
+
+    /**
+     * @param username the username to check
+     * @return returns true if the username was recently looked up and not found
+     */
+    public boolean isUsernameKnownAbsent(String username) {
+        return username != null && isKnownAbsent("username:" + username);
+    }
+
+    /**
+     * @param email the email to check
+     * @return returns true if the email was recently looked up and not found
+     */
+    public boolean isEmailKnownAbsent(String email) {
+        return email != null && isKnownAbsent("email:" + email);
+    }
+
+    public void markUsernameAbsent(String username) {
+        if (username != null) {
+            absent.put("username:" + username, Boolean.TRUE);
+        }
+    }
+
+    public void markEmailAbsent(String email) {
+        if (email != null) {
+            absent.put("email:" + email, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Caches a copy of the user, replacing any older copy, and forgets that its username and email were absent
+     * @param user the user as it is now stored in the database
+     */
+    public void put(User user) {
+        User cached = copy(user);
+        byId.put(cached.getUserId(), cached);
+        if (cached.getUsername() != null) {
+            byUsername.put(cached.getUsername(), cached.getUserId());
+            absent.invalidate("username:" + cached.getUsername());
+        }
+        if (cached.getEmail() != null) {
+            byEmail.put(cached.getEmail(), cached.getUserId());
+            absent.invalidate("email:" + cached.getEmail());
+        }
+    }
+
+    /**
+     * Drops a user from the cache
+     * @param id the id of the user
+     */
+    public void invalidate(int id) {
+        User cached = byId.getIfPresent(id);
+        byId.invalidate(id);
+        if (cached != null && cached.getUsername() != null) {
+            byUsername.invalidate(cached.getUsername());
+        }
+        if (cached != null && cached.getEmail() != null) {
+            byEmail.invalidate(cached.getEmail());
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * @return returns the current size and the hit, miss, eviction and invalidation counts of the cache
+     */
+    public UserCacheStats stats() {
+        CacheStats stats = byId.stats();
+        UserCacheStats snapshot = new UserCacheStats();
+        snapshot.setSize(byId.estimatedSize());
+        snapshot.setHits(stats.hitCount());
+        snapshot.setMisses(stats.missCount());
+        snapshot.setEvictions(stats.evictionCount());
+        snapshot.setInvalidations(invalidations.sum());
+        snapshot.setAbsentHits(absentHits.sum());
+        return snapshot;
+    }
+
+    private boolean isKnownAbsent(String key) {
+        if (absent.getIfPresent(key) == null) {
+            return false;
+        }
+        absentHits.increment();
+        return true;
+    }
+
+    private static User copy(User user) {
+        User copy = new User(user.getUserId(), user.getUsername(), user.getPassword(), user.getFirstname(),
+                user.getLastname(), user.getEmail(), user.getUserRole());
+        copy.setVersion(user.getVersion());
+        return copy;
+    }
+}
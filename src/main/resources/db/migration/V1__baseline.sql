@@ -0,0 +1,75 @@
+-- The tables the entities map to. Every statement is safe to run against a database that was set up by hand with
+-- table-creation.sql, so existing installs are brought to the same schema as new ones.
+
+CREATE TABLE IF NOT EXISTS ers_user_roles (
+	id serial,
+	role_name varchar(25) NOT NULL,
+	CONSTRAINT ers_user_roles_pk PRIMARY KEY (id)
+);
+
+INSERT INTO ers_user_roles (role_name)
+SELECT r.role_name FROM (VALUES (1, 'ADMIN'), (2, 'FINANCE_MANAGER'), (3, 'EMPLOYEE'), (4, 'DELETED')) AS r(n, role_name)
+WHERE NOT EXISTS (SELECT 1 FROM ers_user_roles)
+ORDER BY r.n;
+
+CREATE TABLE IF NOT EXISTS ers_reimbursement_types (
+	id serial,
+	role_name varchar(10) NOT NULL,
+	CONSTRAINT ers_reimbursement_types_pk PRIMARY KEY (id)
+);
+
+INSERT INTO ers_reimbursement_types (role_name)
+SELECT t.role_name FROM (VALUES (1, 'LODGING'), (2, 'TRAVEL'), (3, 'FOOD'), (4, 'OTHER')) AS t(n, role_name)
+WHERE NOT EXISTS (SELECT 1 FROM ers_reimbursement_types)
+ORDER BY t.n;
+
+CREATE TABLE IF NOT EXISTS ers_reimbursement_statuses (
+	id serial,
+	role_name varchar(10) NOT NULL,
+	CONSTRAINT ers_reimbursement_statuses_pk PRIMARY KEY (id)
+);
+
+INSERT INTO ers_reimbursement_statuses (role_name)
+SELECT s.role_name FROM (VALUES (1, 'PENDING'), (2, 'APPROVED'), (3, 'DENIED'), (4, 'CLOSED')) AS s(n, role_name)
+WHERE NOT EXISTS (SELECT 1 FROM ers_reimbursement_statuses)
+ORDER BY s.n;
+
+CREATE TABLE IF NOT EXISTS ers_users (
+	id serial,
+	username varchar(25) UNIQUE NOT NULL,
+	password varchar(256) NOT NULL,
+	first_name varchar(25) NOT NULL,
+	last_name varchar(25) NOT NULL,
+	email varchar(256) UNIQUE NOT NULL,
+	user_role_id int NOT NULL,
+	is_active boolean DEFAULT true,
+	version int NOT NULL DEFAULT 0,
+	CONSTRAINT ers_user_id PRIMARY KEY (id),
+	CONSTRAINT ers_user_roles_fk FOREIGN KEY (user_role_id) REFERENCES ers_user_roles
+);
+
+CREATE TABLE IF NOT EXISTS ers_reimbursements (
+	id serial NOT NULL,
+	amount numeric(6,2) NOT NULL,
+	submitted timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	resolved timestamp NULL,
+	description varchar(1000) NULL,
+	receipt bytea,
+	receipt_hash varchar(64) NULL,
+	author_id int4 NOT NULL,
+	resolver_id int4 NULL,
+	reimbursement_status_id int4 NOT NULL,
+	reimbursement_type_id int4 NOT NULL,
+	version int4 NOT NULL DEFAULT 0,
+	CONSTRAINT ers_reimbursements_pk PRIMARY KEY (id),
+	CONSTRAINT author_id_fk FOREIGN KEY (author_id) REFERENCES ers_users(id),
+	CONSTRAINT resolver_id_fk FOREIGN KEY (resolver_id) REFERENCES ers_users(id),
+	CONSTRAINT reimbursement_status_id_fk FOREIGN KEY (reimbursement_status_id) REFERENCES ers_reimbursement_statuses(id),
+	CONSTRAINT reimbursement_type_id_fk FOREIGN KEY (reimbursement_type_id) REFERENCES ers_reimbursement_types(id)
+);
+
+-- columns added after table-creation.sql was first written
+ALTER TABLE ers_users ADD COLUMN IF NOT EXISTS version int NOT NULL DEFAULT 0;
+ALTER TABLE ers_reimbursements ADD COLUMN IF NOT EXISTS receipt bytea;
+ALTER TABLE ers_reimbursements ADD COLUMN IF NOT EXISTS receipt_hash varchar(64) NULL;
+ALTER TABLE ers_reimbursements ADD COLUMN IF NOT EXISTS version int4 NOT NULL DEFAULT 0;
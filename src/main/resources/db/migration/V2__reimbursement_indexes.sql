@@ -0,0 +1,28 @@
+-- One index per shape of filter the ReimbursementsRepository finders use. Postgres can use the leading columns of a
+-- composite index on their own, so each index also serves the finders that filter on fewer columns.
+
+-- getAllReimbSetByStatus, and keyset pagination filtered by status, ordered by (submitted, id)
+CREATE INDEX IF NOT EXISTS ers_reimbursements_status_submitted_id_idx
+ON ers_reimbursements (reimbursement_status_id, submitted, id);
+
+-- keyset pagination over every reimbursement
+CREATE INDEX IF NOT EXISTS ers_reimbursements_submitted_id_idx
+ON ers_reimbursements (submitted, id);
+
+-- getAllReimbSetByAuthorId and getAllReimbSetByAuthorIdAndStatus
+CREATE INDEX IF NOT EXISTS ers_reimbursements_author_status_idx
+ON ers_reimbursements (author_id, reimbursement_status_id);
+
+-- getAllReimbSetByAuthorIdAndType
+CREATE INDEX IF NOT EXISTS ers_reimbursements_author_type_idx
+ON ers_reimbursements (author_id, reimbursement_type_id);
+
+-- getAllReimbSetByType
+CREATE INDEX IF NOT EXISTS ers_reimbursements_type_idx
+ON ers_reimbursements (reimbursement_type_id);
+
+-- getAllReimbSetByResolverId and getAllReimbSetByResolverIdAndStatus/Type. Most reimbursements have no resolver
+-- while they are pending, and no finder looks for a null resolver, so those rows are left out of the index
+CREATE INDEX IF NOT EXISTS ers_reimbursements_resolver_idx
+ON ers_reimbursements (resolver_id)
+WHERE resolver_id IS NOT NULL;
@@ -0,0 +1,7 @@
+-- ids.sequence=true has Hibernate take 50 ids with each nextval and hand them out from memory (pooled-lo), which only
+-- works if each nextval moves the sequence on by 50. Rows inserted while ids.sequence=false, or by hand, still get
+-- their id from the serial default, which then skips ahead by 50 but never collides with a block Hibernate is using.
+
+ALTER SEQUENCE ers_users_id_seq INCREMENT BY 50;
+
+ALTER SEQUENCE ers_reimbursements_id_seq INCREMENT BY 50;
@@ -0,0 +1,9 @@
+-- Receipts are served in slices with substring(). A compressed value has to be fetched and decompressed whole for
+-- every slice, which makes a download quadratic in the receipt size, while an uncompressed one stored out of line only
+-- has the slice's own TOAST chunks read. Receipts are mostly images and PDFs that are already compressed, so little
+-- space is given up.
+
+ALTER TABLE ers_reimbursements ALTER COLUMN receipt SET STORAGE EXTERNAL;
+
+-- the storage setting only applies to values written after it, so receipts already stored are written again
+UPDATE ers_reimbursements SET receipt = receipt || ''::bytea WHERE receipt IS NOT NULL;
@@ -0,0 +1,7 @@
+-- getAllReimbSetByType, and keyset pagination filtered by type, ordered by (submitted, id). It leads with the type
+-- column, so it replaces the index on the type alone
+
+CREATE INDEX IF NOT EXISTS ers_reimbursements_type_submitted_id_idx
+ON ers_reimbursements (reimbursement_type_id, submitted, id);
+
+DROP INDEX IF EXISTS ers_reimbursements_type_idx;
@@ -1,3 +1,6 @@
+-- Kept for reference. The schema is now created and upgraded at startup by the versioned scripts in db/migration,
+-- run by MigrationRunner; a change to the schema goes in a new script there, not in this file.
+
 create table ers_user_roles(
 	id serial,
 	role_name varchar(25) not null,
@@ -46,6 +49,7 @@ create table ers_users(
 	email varchar(256) unique not null,
 	user_role_id int not null,
 	is_active boolean default true,
+	version int NOT NULL DEFAULT 0,
 
 
 	constraint ers_user_id
@@ -70,11 +74,13 @@ create TABLE ers_reimbursements (
 	submitted timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
 	resolved timestamp NULL,
 	description varchar(1000) NULL,
-	reciept bytea,
+	receipt bytea,
+	receipt_hash varchar(64) NULL,
 	author_id int4 NOT NULL,
 	resolver_id int4 NULL,
 	reimbursement_status_id int4 NOT NULL,
 	reimbursement_type_id int4 NOT NULL,
+	version int4 NOT NULL DEFAULT 0,
 	CONSTRAINT ers_reimbursements_pk PRIMARY KEY (id)
 );
 
@@ -102,6 +108,35 @@ FOREIGN KEY (resolver_id)
 REFERENCES ers_users(id);
 
 
+-- project_1.ers_reimbursements indexes
+
+-- keyset pagination on (submitted, id), optionally filtered by status or type
+CREATE INDEX ers_reimbursements_submitted_id_idx
+ON ers_reimbursements (submitted, id);
+
+CREATE INDEX ers_reimbursements_status_submitted_id_idx
+ON ers_reimbursements (reimbursement_status_id, submitted, id);
+
+CREATE INDEX ers_reimbursements_type_submitted_id_idx
+ON ers_reimbursements (reimbursement_type_id, submitted, id);
+
+
+-- sequence ids, needed before starting with ids.sequence=true without the startup migrations, which set this
+-- themselves. Hibernate then takes 50 ids with each nextval and hands them out from memory (pooled-lo), so inserts can
+-- be batched. Rows inserted by hand still get their id from the serial default, which skips ahead by 50 but never
+-- collides with a block Hibernate is using. Leave the increment at 1 when ids.sequence is off
+
+-- ALTER SEQUENCE ers_users_id_seq INCREMENT BY 50;
+
+-- ALTER SEQUENCE ers_reimbursements_id_seq INCREMENT BY 50;
+
+
+-- optimistic locking, for tables created before the version columns were added
+
+ALTER TABLE ers_users ADD COLUMN IF NOT EXISTS version int NOT NULL DEFAULT 0;
+
+ALTER TABLE ers_reimbursements ADD COLUMN IF NOT EXISTS version int4 NOT NULL DEFAULT 0;
+
 
 
 INSERT INTO ers_users
@@ -0,0 +1,85 @@
+import com.revature.util.AppConfig;
+import com.revature.util.MigrationRunner;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Checks that every ReimbursementsRepository finder can be answered from an index once the migrations have run.
+ * Each query is the SQL Hibernate generates for the finder, explained with sequential scans turned off, so that even
+ * on a small test database the plan shows whether a usable index exists. Needs the url, username and password of a
+ * Postgres database. Prints the plan of any query that still scans ers_reimbursements and exits with 1.
+ */
+public class IndexUsageTest {
+    private static final String SELECT = "select r.id from ers_reimbursements r "
+            + "inner join ers_users a on r.author_id = a.id left outer join ers_users res on r.resolver_id = res.id ";
+
+    public static void main(String[] args) throws Exception {
+        MigrationRunner.migrate();
+
+        Timestamp epoch = new Timestamp(0);
+        Map<String, Object[]> finders = new LinkedHashMap<>();
+        finders.put("getAllReimbSetByStatus", query("where r.reimbursement_status_id = ?", 1));
+        finders.put("getAllReimbSetByAuthorId", query("where a.id = ?", 1));
+        finders.put("getAllReimbSetByAuthorIdAndStatus", query("where a.id = ? and r.reimbursement_status_id = ?", 1, 1));
+        finders.put("getAllReimbSetByAuthorIdAndType", query("where a.id = ? and r.reimbursement_type_id = ?", 1, 1));
+        finders.put("getAllReimbSetByType", query("where r.reimbursement_type_id = ?", 1));
+        finders.put("getAllReimbSetByResolverId", query("where res.id = ?", 1));
+        finders.put("getAllReimbSetByResolverIdAndStatus", query("where res.id = ? and r.reimbursement_status_id = ?", 1, 1));
+        finders.put("getAllReimbSetByResolverIdAndType", query("where res.id = ? and r.reimbursement_type_id = ?", 1, 1));
+        finders.put("getReimbPage", query("where 1 = 1 and r.submitted >= ? and (r.submitted > ? or r.id > ?) "
+                + "order by r.submitted asc, r.id asc limit 26", epoch, epoch, 0));
+        finders.put("getReimbPage by status", query("where 1 = 1 and r.reimbursement_status_id = ? and r.submitted >= ? "
+                + "and (r.submitted > ? or r.id > ?) order by r.submitted asc, r.id asc limit 26", 1, epoch, epoch, 0));
+        finders.put("getReimbPage by type", query("where 1 = 1 and r.reimbursement_type_id = ? and r.submitted >= ? "
+                + "and (r.submitted > ? or r.id > ?) order by r.submitted asc, r.id asc limit 26", 1, epoch, epoch, 0));
+
+        int failures = 0;
+        try (Connection conn = DriverManager.getConnection(AppConfig.get("url"), AppConfig.get("username"),
+                AppConfig.get("password"));
+             Statement settings = conn.createStatement()) {
+            settings.execute("set enable_seqscan = off");
+            for (Map.Entry<String, Object[]> finder : finders.entrySet()) {
+                String plan = explain(conn, finder.getValue());
+                boolean indexed = !plan.contains("Seq Scan on ers_reimbursements");
+                System.out.println((indexed ? "PASS " : "FAIL ") + finder.getKey());
+                if (!indexed) {
+                    System.out.println(plan);
+                    failures++;
+                }
+            }
+        }
+        System.out.println(failures + " of " + finders.size() + " finders scan ers_reimbursements");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Object[] query(String where, Object... params) {
+        Object[] query = new Object[params.length + 1];
+        query[0] = SELECT + where;
+        System.arraycopy(params, 0, query, 1, params.length);
+        return query;
+    }
+
+    private static String explain(Connection conn, Object[] query) throws Exception {
+        try (PreparedStatement explain = conn.prepareStatement("explain " + query[0])) {
+            for (int i = 1; i < query.length; i++) {
+                explain.setObject(i, query[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = explain.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import com.revature.models.*;
+import com.revature.repositories.ReimbursementsRepository;
+import com.revature.repositories.UserRepository;
+import com.revature.util.ConnectionPoolMetrics;
+import com.revature.util.HibernateUtil;
+import com.revature.util.MigrationRunner;
+
+/**
+ * Adds users and reimbursements with ids.sequence on, where an insert only reaches the database at commit, and checks
+ * that a row the database rejects there is reported as not added rather than thrown, and that its connection goes back
+ * to the pool. Needs the url, username and password of a Postgres database. Exits with 1 if any check fails.
+ */
+public class SequenceIdsTest {
+
+    public static void main(String[] args) throws Exception {
+        // read once when the session factory is built, so it has to be set first
+        System.setProperty("ids.sequence", "true");
+        MigrationRunner.migrate();
+
+        UserRepository userRepo = new UserRepository();
+        ReimbursementsRepository repo = new ReimbursementsRepository();
+        String name = "seq" + System.nanoTime() % 100_000_000;
+
+        int failures = 0;
+        User user = employee(name, name + "@test.com");
+        failures += check("a new user is added", userRepo.addUser(user) && user.getUserId() > 0);
+        failures += check("a taken username is not added", !userRepo.addUser(employee(name, name + "@other.com")));
+
+        Reimbursement reimbursement = new Reimbursement(10.0, "sequence", user, ReimbursementStatus.PENDING,
+                ReimbursementType.FOOD);
+        failures += check("a reimbursement is added", repo.addReimbursement(reimbursement) && reimbursement.getId() > 0);
+        Reimbursement tooLong = new Reimbursement(10.0, new String(new char[1001]).replace('\0', 'x'), user,
+                ReimbursementStatus.PENDING, ReimbursementType.FOOD);
+        failures += check("a description too long for its column is not added", !repo.addReimbursement(tooLong));
+
+        failures += check("no connection is left open", ConnectionPoolMetrics.getInstance().snapshot().getActive() == 0);
+        HibernateUtil.shutdown();
+
+        System.out.println(failures + " checks failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static User employee(String username, String email) {
+        User user = new User(username, "password", "Sequence", "Ids", email);
+        user.setUserRole(Role.EMPLOYEE.ordinal());
+        return user;
+    }
+
+    private static int check(String name, boolean passed) {
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+        return passed ? 0 : 1;
+    }
+}
@@ -0,0 +1,123 @@
+import com.revature.dtos.ImportReport;
+import com.revature.dtos.QueryStats;
+import com.revature.dtos.RbDTO;
+import com.revature.exceptions.RepeatedStatementException;
+import com.revature.models.*;
+import com.revature.repositories.ReimbursementsRepository;
+import com.revature.repositories.UserRepository;
+import com.revature.services.ReimbursementService;
+import com.revature.util.HibernateUtil;
+import com.revature.util.MigrationRunner;
+import com.revature.util.StatementTracker;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the hot reimbursement paths with sql.nPlusOneFail on and a low threshold, so that any of them loading rows one
+ * statement at a time fails here instead of showing up as a warning in production. Also checks that the check does
+ * trip on a real N+1, and that receipt downloads and imports, which repeat statements on purpose, are left out. The
+ * second level cache is turned off so every lookup reaches the database, and if a check fails the queries that ran
+ * are listed from the Hibernate statistics. Needs the url, username and password of a
+ * Postgres database. Exits with 1 if any check fails.
+ */
+public class StatementCountTest {
+    private static final int THRESHOLD = 5;
+
+    public static void main(String[] args) throws Exception {
+        // read once when the classes load, so these have to be set first
+        System.setProperty("sql.nPlusOneFail", "true");
+        System.setProperty("sql.nPlusOneThreshold", String.valueOf(THRESHOLD));
+        System.setProperty("cache.enabled", "false");
+        // off by default, on here so a failing run can list the queries that ran
+        System.setProperty("hibernate.statistics", "true");
+        MigrationRunner.migrate();
+
+        UserRepository userRepo = new UserRepository();
+        ReimbursementsRepository repo = new ReimbursementsRepository();
+        ReimbursementService service = ReimbursementService.getInstance();
+
+        String name = "count" + System.nanoTime() % 100_000_000;
+        User user = new User(name, "password", "Statement", "Count", name + "@test.com");
+        user.setUserRole(Role.EMPLOYEE.ordinal());
+        userRepo.addUser(user);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < THRESHOLD * 2; i++) {
+            Reimbursement reimbursement = new Reimbursement(10.0 + i, "count " + i, user, ReimbursementStatus.PENDING,
+                    ReimbursementType.FOOD);
+            if (i == 0) {
+                reimbursement.setReceipt(new byte[1024 * 1024]);
+            }
+            repo.addReimbursement(reimbursement);
+            ids.add(reimbursement.getId());
+        }
+
+        int failures = 0;
+        failures += check("hot paths stay under the threshold", false, () -> {
+            service.getAllReimb();
+            service.getReimbByUserId(user.getUserId());
+            service.getReimbByStatus(ReimbursementStatus.PENDING.ordinal());
+            service.getReimbByType(ReimbursementType.FOOD.ordinal());
+            service.getReimbPage(null, null, null, 25, null);
+            service.getReport(null, null, null);
+            service.getReimbByReimbId(ids.get(0));
+            service.streamReimb(null, null, reimbursement -> { });
+        });
+        failures += check("loading reimbursements one at a time trips the check", true, () -> {
+            for (Integer id : ids) {
+                repo.getAReimbByReimbId(id);
+            }
+        });
+        failures += check("a receipt download is left out", false, () -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            service.writeReceipt(ids.get(0), 0, 1024 * 1024, out);
+        });
+        failures += check("an import is left out", false, () -> {
+            List<RbDTO> rows = new ArrayList<>();
+            for (int i = 0; i < THRESHOLD * 2; i++) {
+                RbDTO row = new RbDTO();
+                row.setAmount(5.0);
+                row.setDescription("imported " + i);
+                row.setType("FOOD");
+                rows.add(row);
+            }
+            ImportReport report = service.importReimbursements(user, rows.iterator());
+            if (report.getImported() != rows.size()) {
+                throw new IllegalStateException("imported " + report.getImported() + " of " + rows.size());
+            }
+        });
+
+        System.out.println(failures + " checks failed");
+        if (failures > 0) {
+            for (QueryStats stats : HibernateUtil.getQueryStats()) {
+                System.out.println(stats.getExecutions() + "x " + stats.getQuery());
+            }
+            System.exit(1);
+        }
+    }
+
+    private interface Check {
+        void run() throws Exception;
+    }
+
+    private static int check(String name, boolean shouldTrip, Check check) {
+        StatementTracker.begin(name);
+        boolean tripped = false;
+        try {
+            check.run();
+        } catch (RepeatedStatementException e) {
+            tripped = true;
+            if (!shouldTrip) {
+                System.out.println(e.getMessage());
+            }
+        } catch (Exception e) {
+            System.out.println("FAIL " + name + ": " + e);
+            return 1;
+        } finally {
+            StatementTracker.end();
+        }
+        System.out.println((tripped == shouldTrip ? "PASS " : "FAIL ") + name);
+        return tripped == shouldTrip ? 0 : 1;
+    }
+}